@@ -0,0 +1,50 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.dtos;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PageDTO<T> implements Serializable {
+    private List<T> items;
+    private String next;
+    private Long totalHits;
+
+    public PageDTO() {
+        this.items = new ArrayList<>();
+    }
+
+    public PageDTO(List<T> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public PageDTO(List<T> items, String next, Long totalHits) {
+        this.items = items;
+        this.next = next;
+        this.totalHits = totalHits;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public Long getTotalHits() {
+        return totalHits;
+    }
+
+    public void setTotalHits(Long totalHits) {
+        this.totalHits = totalHits;
+    }
+}
@@ -32,6 +32,8 @@ public class PublicationDTO implements Serializable {
 
     private List<TagDTO> tags;
 
+    private List<String> highlights;
+
     public PublicationDTO() {
         this.tags = new ArrayList<>();
         this.authors = new ArrayList<>();
@@ -195,6 +197,14 @@ public class PublicationDTO implements Serializable {
         this.tags = tags;
     }
 
+    public List<String> getHighlights() {
+        return highlights;
+    }
+
+    public void setHighlights(List<String> highlights) {
+        this.highlights = highlights;
+    }
+
     public static PublicationDTO forTagPostList(Publication pub) {
         return new PublicationDTO(
                 pub.getId(),
@@ -216,7 +226,7 @@ public class PublicationDTO implements Serializable {
         );
         dto.setScientificArea(pub.getScientificArea());
         dto.setPublicationDate(pub.getPublicationDate() != null ? pub.getPublicationDate().toString() : null);
-        dto.setCommentCount(pub.getComments().size());
+        dto.setCommentCount(pub.getCommentCount());
         dto.setAverageRating(pub.getAverageRating());
         return dto;
     }
@@ -235,7 +245,7 @@ public class PublicationDTO implements Serializable {
 
         dto.setAuthors(pub.getAuthors() != null ? pub.getAuthors() : new ArrayList<>());
         dto.setAverageRating(pub.getAverageRating());
-        dto.setCommentCount(pub.getComments() != null ? pub.getComments().size() : 0);
+        dto.setCommentCount(pub.getCommentCount());
         dto.setRatingCount(pub.getRatingCount());
 
         if (pub.getTags() != null) {
@@ -0,0 +1,64 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.dtos;
+
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SentEmail;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SentEmailDTO implements Serializable {
+    private String to;
+    private String subject;
+    private String body;
+    private String sentAt;
+
+    public SentEmailDTO() {
+    }
+
+    public SentEmailDTO(String to, String subject, String body, String sentAt) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.sentAt = sentAt;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public String getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(String sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public static SentEmailDTO from(SentEmail email) {
+        return new SentEmailDTO(email.getRecipient(), email.getSubject(), email.getBody(), email.getSentAt().toString());
+    }
+
+    public static List<SentEmailDTO> from(List<SentEmail> emails) {
+        return emails.stream().map(SentEmailDTO::from).collect(Collectors.toList());
+    }
+}
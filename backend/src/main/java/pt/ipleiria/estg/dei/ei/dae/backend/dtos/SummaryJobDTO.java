@@ -0,0 +1,109 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.dtos;
+
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryJob;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryJobStatus;
+
+import java.io.Serializable;
+
+public class SummaryJobDTO implements Serializable {
+    private long publicationId;
+    private SummaryJobStatus status;
+    private int attempts;
+    private int progressDone;
+    private int progressTotal;
+    private String lastError;
+    private String partialSummary;
+    private String updatedAt;
+    private String nextAttemptAt;
+
+    public SummaryJobDTO() {
+    }
+
+    public long getPublicationId() {
+        return publicationId;
+    }
+
+    public void setPublicationId(long publicationId) {
+        this.publicationId = publicationId;
+    }
+
+    public SummaryJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(SummaryJobStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getProgressDone() {
+        return progressDone;
+    }
+
+    public void setProgressDone(int progressDone) {
+        this.progressDone = progressDone;
+    }
+
+    public int getProgressTotal() {
+        return progressTotal;
+    }
+
+    public void setProgressTotal(int progressTotal) {
+        this.progressTotal = progressTotal;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public String getPartialSummary() {
+        return partialSummary;
+    }
+
+    public void setPartialSummary(String partialSummary) {
+        this.partialSummary = partialSummary;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(String updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(String nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public static SummaryJobDTO from(SummaryJob job) {
+        SummaryJobDTO dto = new SummaryJobDTO();
+        dto.setPublicationId(job.getPublicationId());
+        dto.setStatus(job.getStatus());
+        dto.setAttempts(job.getAttempts());
+        dto.setProgressDone(job.getProgressDone());
+        dto.setProgressTotal(job.getProgressTotal());
+        dto.setLastError(job.getLastError());
+        dto.setPartialSummary(job.getPartialSummary());
+        dto.setUpdatedAt(job.getUpdatedAt().toString());
+        if (job.getStatus() == SummaryJobStatus.QUEUED) {
+            dto.setNextAttemptAt(job.getNextAttemptAt().toString());
+        }
+        return dto;
+    }
+}
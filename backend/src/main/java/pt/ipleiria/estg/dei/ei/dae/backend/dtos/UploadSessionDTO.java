@@ -0,0 +1,110 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.dtos;
+
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.UploadSession;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UploadSessionDTO implements Serializable {
+    private String id;
+    private String fileName;
+    private long size;
+    private String sha256;
+
+    private int chunkSize;
+    private int chunkCount;
+    private List<Integer> receivedChunks;
+    private boolean alreadyStored;
+    private String expiresAt;
+
+    public UploadSessionDTO() {
+        this.receivedChunks = new ArrayList<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public List<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(List<Integer> receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public boolean isAlreadyStored() {
+        return alreadyStored;
+    }
+
+    public void setAlreadyStored(boolean alreadyStored) {
+        this.alreadyStored = alreadyStored;
+    }
+
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(String expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public static UploadSessionDTO from(UploadSession session, boolean alreadyStored) {
+        UploadSessionDTO dto = new UploadSessionDTO();
+        dto.setId(session.getId());
+        dto.setFileName(session.getFileName());
+        dto.setSize(session.getTotalSize());
+        dto.setSha256(session.getSha256());
+        dto.setChunkSize(session.getChunkSize());
+        dto.setChunkCount(session.getChunkCount());
+        dto.setReceivedChunks(session.getReceivedChunks().stream().sorted().toList());
+        dto.setAlreadyStored(alreadyStored);
+        dto.setExpiresAt(session.getExpiresAt().toString());
+        return dto;
+    }
+}
@@ -0,0 +1,245 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.ActivityType;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Metrics;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Settings;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind for the audit log (history_logs). HistoryBean hands over the entries of a
+ * transaction once it commits, and a dedicated thread from the ManagedThreadFactory (not the
+ * shared executor) inserts them in JDBC batches of up to
+ * "centroXYZ.audit.batchSize". "centroXYZ.audit.mode" picks the guarantee:
+ * ASYNC (the default) does not wait, so entries still queued are lost if the server dies;
+ * GROUP_COMMIT makes the caller wait, after its own transaction has committed, until the batch
+ * holding its entries is written or fails, or "centroXYZ.audit.groupCommitWaitMillis" passes;
+ * a failure or timeout is logged, never turned into an error for the request, whose changes
+ * are already committed. SYNC inserts in the caller's transaction, as before.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class AuditWriterBean {
+
+    public enum Mode {
+        SYNC,
+        GROUP_COMMIT,
+        ASYNC
+    }
+
+    private static final Logger logger = Logger.getLogger(AuditWriterBean.class.getName());
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @EJB
+    private HistoryBean historyBean;
+
+    private Mode mode;
+    private int batchSize;
+    private Duration groupCommitWait;
+    private BlockingQueue<Entry> queue;
+
+    private volatile boolean running;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private Metrics.Timer flushes;
+    private AtomicLong written;
+    private AtomicLong failed;
+
+    @PostConstruct
+    public void init() {
+        String configured = Settings.getString("centroXYZ.audit.mode", Mode.ASYNC.name());
+        try {
+            mode = Mode.valueOf(configured.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid value for centroXYZ.audit.mode: " + configured + ", using ASYNC");
+            mode = Mode.ASYNC;
+        }
+        batchSize = Math.max(1, Settings.getInt("centroXYZ.audit.batchSize", 200));
+        groupCommitWait = Duration.ofMillis(Math.max(1, Settings.getLong("centroXYZ.audit.groupCommitWaitMillis", 1000)));
+        queue = new LinkedBlockingQueue<>(Math.max(1, Settings.getInt("centroXYZ.audit.queueCapacity", 10000)));
+
+        flushes = Metrics.timer("audit.flush");
+        written = Metrics.counter("audit.written");
+        failed = Metrics.counter("audit.failed");
+        Metrics.gauge("audit.queue.depth", () -> queue.size());
+
+        if (mode != Mode.SYNC) {
+            running = true;
+            threadFactory.newThread(this::drain).start();
+        } else {
+            stopped.countDown();
+        }
+        logger.info("Audit log mode " + mode);
+    }
+
+    /**
+     * Waits a few seconds for the entries still queued to be written.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            stopped.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Called once the transaction that logged the entries has committed. When the queue is
+     * full the entries are written on the caller's thread instead, so none are dropped.
+     */
+    public void submit(List<Entry> entries) {
+        List<Entry> overflow = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!running || !queue.offer(entry)) {
+                overflow.add(entry);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            write(overflow);
+        }
+
+        if (mode == Mode.GROUP_COMMIT) {
+            CompletableFuture<?>[] pending = entries.stream().map(Entry::getWritten).toArray(CompletableFuture[]::new);
+            try {
+                CompletableFuture.allOf(pending).get(groupCommitWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.warning("Registos de histórico não escritos: " + e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                logger.warning("Registos de histórico ainda não escritos após " + groupCommitWait.toMillis() + "ms");
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * One transaction and one JDBC batch for the whole list; if it fails, each entry is retried
+     * on its own so one bad row (e.g. a user deleted meanwhile) does not lose the others.
+     */
+    private void write(List<Entry> batch) {
+        long start = System.nanoTime();
+        try {
+            historyBean.insertBatch(batch);
+            flushes.record(System.nanoTime() - start, true);
+            written.addAndGet(batch.size());
+            batch.forEach(entry -> entry.getWritten().complete(null));
+            return;
+        } catch (Exception e) {
+            flushes.record(System.nanoTime() - start, false);
+            if (batch.size() == 1) {
+                failed.incrementAndGet();
+                logger.warning("Erro ao escrever registo de histórico: " + e.getMessage());
+                batch.get(0).getWritten().completeExceptionally(e);
+                return;
+            }
+        }
+
+        for (Entry entry : batch) {
+            write(List.of(entry));
+        }
+    }
+
+    /**
+     * A history_logs row waiting to be written.
+     */
+    public static class Entry {
+        private final ActivityType action;
+        private final String description;
+        private final String entity;
+        private final Long entityId;
+        private final String username;
+        private final LocalDateTime timestamp;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        public Entry(ActivityType action, String description, String entity, Long entityId, String username) {
+            this.action = action;
+            this.description = description;
+            this.entity = entity;
+            this.entityId = entityId;
+            this.username = username;
+            this.timestamp = LocalDateTime.now();
+        }
+
+        public ActivityType getAction() {
+            return action;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public Long getEntityId() {
+            return entityId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        CompletableFuture<Void> getWritten() {
+            return written;
+        }
+    }
+}
@@ -18,7 +18,7 @@ public class CommentBean {
     private HistoryBean historyBean;
 
     @EJB
-    private EmailBean emailBean;
+    private NotificationBean notificationBean;
 
     public Comment create(String text, User user, Publication publication) throws MyEntityNotFoundException {
         Publication managedPublication = em.find(Publication.class, publication.getId());
@@ -30,6 +30,7 @@ public class CommentBean {
         em.persist(comment);
 
         managedPublication.addComment(comment);
+        updateCounter(managedPublication, 1);
 
         historyBean.logActivity(
                 ActivityType.COMMENT_CREATED,
@@ -39,13 +40,8 @@ public class CommentBean {
                 user
         );
 
-        for (Tag tag : managedPublication.getTags()) {
-            emailBean.notifyTagSubscribers(
-                    tag,
-                    publication,
-                    "New comment on publication with tag: " + tag.getName()
-            );
-        }
+        // Subscribers of any of the publication's tags hear about it in their next digest
+        notificationBean.notifyPublicationSubscribers(managedPublication, "New comment on a publication with your tags");
 
         return comment;
     }
@@ -132,9 +128,19 @@ public class CommentBean {
                 performedBy
         );
 
+        updateCounter(comment.getPublication(), -1);
         em.remove(comment);
     }
 
+    // The bulk update bypasses the persistence context, so the managed publication gets the same delta
+    private void updateCounter(Publication publication, int delta) {
+        em.createNamedQuery("updatePublicationCommentCounter")
+                .setParameter("delta", delta)
+                .setParameter("publicationId", publication.getId())
+                .executeUpdate();
+        publication.applyCommentDelta(delta);
+    }
+
     public boolean canEdit(Comment comment, User user) {
         if (comment.getUser().getUsername().equals(user.getUsername())) {
             return true;
@@ -0,0 +1,22 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+
+import java.util.logging.Logger;
+
+@Singleton
+public class CounterRepairBean {
+
+    private static final Logger logger = Logger.getLogger(CounterRepairBean.class.getName());
+
+    @EJB
+    private PublicationBean publicationBean;
+
+    @Schedule(hour = "4", minute = "0", persistent = false)
+    public void repairCounters() {
+        int updated = publicationBean.recomputeCounters();
+        logger.info("Rating and comment counters recomputed for " + updated + " publications");
+    }
+}
@@ -1,46 +1,327 @@
 package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
 
 
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.Document;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.DocumentBlob;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.FileType;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+/**
+ * Content-addressed document store. Files live under blobs/ab/cd/&lt;sha256&gt;, so identical
+ * uploads share one copy on disk; each Document holds a reference on its DocumentBlob.
+ */
 @Stateless
 public class DocumentBean {
     private static final String UPLOAD_DIR = "/tmp/uploads";
+    private static final Path BLOB_DIR = Paths.get(UPLOAD_DIR, "blobs");
+    private static final Path STAGING_DIR = Paths.get(UPLOAD_DIR, "staging");
+
+    // Unreferenced blobs and stray files younger than this are left alone, their transaction may still be running
+    private static final Duration GC_GRACE_PERIOD = Duration.ofHours(1);
+
+    private static final Logger logger = Logger.getLogger(DocumentBean.class.getName());
 
     @PersistenceContext
     private EntityManager em;
 
-    public Document create(String filename, String username, InputStream stream, FileType fileType)
+    @EJB
+    private DocumentTextBean documentTextBean;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    public Document create(String filename, InputStream stream, FileType fileType) throws IOException {
+        Path staged = null;
+        try {
+            staged = newStagingFile();
+
+            // The upload is streamed straight to disk; the digest is computed on the way through
+            MessageDigest digest = newDigest();
+            long size;
+            try (var digestStream = new DigestInputStream(stream, digest)) {
+                size = Files.copy(digestStream, staged, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return create(filename, fileType, staged, HexFormat.of().formatHex(digest.digest()), size);
+
+        } catch (IOException e) {
+            if (staged != null) {
+                Files.deleteIfExists(staged);
+            }
+            logger.severe("Error saving uploaded file: " + e.getMessage());
+            throw new IOException("Failed to upload file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves an already hashed file from the staging area into the store. If the same content
+     * is already stored the staged copy is simply discarded.
+     */
+    public Document create(String filename, FileType fileType, Path staged, String sha256, long size)
             throws IOException {
+        DocumentBlob blob = acquire(sha256, size);
+
+        Path target = pathOf(sha256);
+        if (Files.exists(target)) {
+            Files.deleteIfExists(staged);
+        } else {
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(staged);
+            }
+        }
+
+        var document = new Document(filename, target.toString(), fileType);
+        document.setSha256(blob.getHash());
+        document.setFileSize(blob.getSize());
+        return document;
+    }
+
+    /**
+     * Creates a Document for content that is already in the store, without transferring it again.
+     * Returns null when no stored blob has that hash.
+     */
+    public Document createFromExisting(String filename, FileType fileType, String sha256) {
+        DocumentBlob blob = em.find(DocumentBlob.class, sha256, LockModeType.PESSIMISTIC_WRITE);
+        Path target = pathOf(sha256);
+        if (blob == null || !Files.exists(target)) {
+            return null;
+        }
+        blob.acquire();
+
+        var document = new Document(filename, target.toString(), fileType);
+        document.setSha256(sha256);
+        document.setFileSize(blob.getSize());
+        return document;
+    }
+
+    public boolean exists(String sha256) {
+        return isHash(sha256) && em.find(DocumentBlob.class, sha256) != null && Files.exists(pathOf(sha256));
+    }
+
+    public void release(Document document) {
+        if (document == null || document.getSha256() == null) {
+            return;
+        }
+        DocumentBlob blob = em.find(DocumentBlob.class, document.getSha256(), LockModeType.PESSIMISTIC_WRITE);
+        if (blob != null) {
+            blob.release();
+        }
+    }
+
+    public Path newStagingFile() throws IOException {
+        Files.createDirectories(STAGING_DIR);
+        return Files.createTempFile(STAGING_DIR, "upload_", ".part");
+    }
+
+    /**
+     * Deletes blobs nobody references anymore, files in the store without a DocumentBlob
+     * (left behind by rolled back uploads) and abandoned staging files. The file of a removed
+     * blob is renamed to a tombstone while its row is locked, so an upload of the same content
+     * right after the commit stores a fresh copy instead of relying on a file about to go; the
+     * tombstones are deleted once the removal has committed, and put back if it rolls back.
+     */
+    public int collectGarbage() {
+        int removed = 0;
+        List<String> deleted = new ArrayList<>();
+        LocalDateTime before = LocalDateTime.now().minus(GC_GRACE_PERIOD);
+
+        List<DocumentBlob> orphans = em.createNamedQuery("getOrphanBlobs", DocumentBlob.class)
+                .setParameter("before", before)
+                .getResultList();
+        for (DocumentBlob orphan : orphans) {
+            em.lock(orphan, LockModeType.PESSIMISTIC_WRITE);
+            em.refresh(orphan);
+            if (orphan.getRefCount() > 0) {
+                continue;
+            }
+            Path file = pathOf(orphan.getHash());
+            try {
+                if (Files.exists(file)) {
+                    Files.move(file, tombstoneOf(file), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                logger.warning("Error deleting " + file + ": " + e.getMessage());
+                continue;
+            }
+            deleted.add(orphan.getHash());
+            em.remove(orphan);
+            removed++;
+        }
+        if (!deleted.isEmpty()) {
+            transactions.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    for (String hash : deleted) {
+                        Path file = pathOf(hash);
+                        if (status == Status.STATUS_COMMITTED) {
+                            deleteQuietly(tombstoneOf(file));
+                            documentTextBean.delete(hash);
+                        } else {
+                            restore(file);
+                        }
+                    }
+                }
+            });
+        }
+
+        removed += removeUnknownBlobs();
+        removed += removeStaleFiles(STAGING_DIR);
+        return removed;
+    }
+
+    private static Path tombstoneOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".gc");
+    }
 
+    private void restore(Path file) {
+        if (!Files.exists(tombstoneOf(file))) {
+            return;
+        }
         try {
-            var targetDirectoryPath = Paths.get(UPLOAD_DIR, username);
-            if (!Files.exists(targetDirectoryPath)) {
-                Files.createDirectories(targetDirectoryPath);
+            Files.move(tombstoneOf(file), file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Uploaded again meanwhile: same content
+            deleteQuietly(tombstoneOf(file));
+        } catch (IOException e) {
+            logger.warning("Error restoring " + file + ": " + e.getMessage());
+        }
+    }
+
+    private int removeUnknownBlobs() {
+        if (!Files.isDirectory(BLOB_DIR)) {
+            return 0;
+        }
+        List<Path> candidates;
+        try (Stream<Path> files = Files.walk(BLOB_DIR)) {
+            candidates = files.filter(Files::isRegularFile).filter(this::isPastGracePeriod).toList();
+        } catch (IOException e) {
+            logger.warning("Error scanning document store: " + e.getMessage());
+            return 0;
+        }
+
+        int removed = 0;
+        for (int from = 0; from < candidates.size(); from += 500) {
+            List<Path> batch = candidates.subList(from, Math.min(candidates.size(), from + 500));
+            List<String> hashes = new ArrayList<>();
+            for (Path file : batch) {
+                hashes.add(file.getFileName().toString());
+            }
+            Set<String> known = new HashSet<>(em.createNamedQuery("getKnownBlobHashes", String.class)
+                    .setParameter("hashes", hashes)
+                    .getResultList());
+            for (Path file : batch) {
+                if (!known.contains(file.getFileName().toString())) {
+                    deleteQuietly(file);
+                    removed++;
+                }
             }
+        }
+        return removed;
+    }
 
-            var targetFilePath = targetDirectoryPath.resolve("file_" + UUID.randomUUID());
-            Files.copy(stream, targetFilePath, StandardCopyOption.REPLACE_EXISTING);
+    private int removeStaleFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> stale = files.filter(Files::isRegularFile).filter(this::isPastGracePeriod).toList();
+            stale.forEach(this::deleteQuietly);
+            return stale.size();
+        } catch (IOException e) {
+            logger.warning("Error cleaning " + directory + ": " + e.getMessage());
+            return 0;
+        }
+    }
 
-            var document = new Document(filename, targetFilePath.toString(), fileType);
+    /**
+     * The row is created with ON CONFLICT DO NOTHING before it is locked: a concurrent first
+     * upload of the same content waits for ours instead of failing on the primary key.
+     */
+    private DocumentBlob acquire(String sha256, long size) {
+        DocumentBlob blob = null;
+        while (blob == null) {
+            em.createNativeQuery("INSERT INTO document_blobs (hash, size, refCount) VALUES (?1, ?2, 0) "
+                            + "ON CONFLICT (hash) DO NOTHING")
+                    .setParameter(1, sha256)
+                    .setParameter(2, size)
+                    .executeUpdate();
+            // Null only if the garbage collector removed an orphaned row between the two statements
+            blob = em.find(DocumentBlob.class, sha256, LockModeType.PESSIMISTIC_WRITE);
+        }
+        blob.acquire();
+        return blob;
+    }
 
-            return document;
+    private boolean isPastGracePeriod(Path file) {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            return modified.toInstant().isBefore(Instant.now().minus(GC_GRACE_PERIOD));
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
         } catch (IOException e) {
-            System.err.println("Error creating directory or saving file: " + e.getMessage());
-            e.printStackTrace();
-            throw new IOException("Failed to upload file: " + e.getMessage(), e);
+            logger.warning("Error deleting " + file + ": " + e.getMessage());
+        }
+    }
+
+    public static Path pathOf(String sha256) {
+        if (!isHash(sha256)) {
+            throw new IllegalArgumentException("Invalid content hash: " + sha256);
+        }
+        return BLOB_DIR.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    public static boolean isHash(String value) {
+        return value != null && value.matches("[0-9a-f]{64}");
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 }
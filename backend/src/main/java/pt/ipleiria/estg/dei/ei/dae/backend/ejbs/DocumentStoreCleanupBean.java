@@ -0,0 +1,32 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+
+import java.util.logging.Logger;
+
+@Singleton
+public class DocumentStoreCleanupBean {
+
+    private static final Logger logger = Logger.getLogger(DocumentStoreCleanupBean.class.getName());
+
+    @EJB
+    private DocumentBean documentBean;
+
+    @EJB
+    private UploadSessionBean uploadSessionBean;
+
+    @Schedule(hour = "*", minute = "30", persistent = false)
+    public void collectGarbage() {
+        int expired = uploadSessionBean.removeExpired();
+        if (expired > 0) {
+            logger.info("Removed " + expired + " expired upload sessions");
+        }
+
+        int removed = documentBean.collectGarbage();
+        if (removed > 0) {
+            logger.info("Document store cleanup removed " + removed + " unreferenced files");
+        }
+    }
+}
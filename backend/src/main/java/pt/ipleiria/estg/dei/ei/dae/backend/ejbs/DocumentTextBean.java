@@ -0,0 +1,96 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.Stateless;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Side store for the text extracted from uploaded documents, gzip-compressed and keyed by
+ * the content hash of the document, so each distinct file only has to be parsed once.
+ */
+@Stateless
+public class DocumentTextBean {
+    private static final String TEXT_DIR = "/tmp/uploads/text";
+
+    private static final Logger logger = Logger.getLogger(DocumentTextBean.class.getName());
+
+    public void store(String sha256, String text) throws IOException {
+        Path target = pathOf(sha256);
+        Files.createDirectories(target.getParent());
+
+        // Written to a temporary file first so readers never see a truncated entry
+        Path temporary = Files.createTempFile(target.getParent(), "text_", ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String load(String sha256) {
+        if (!DocumentBean.isHash(sha256)) {
+            return null;
+        }
+        Path path = pathOf(sha256);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warning("Erro ao ler texto extraído do documento " + sha256 + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Only decompresses the first maxChars characters.
+     */
+    public String load(String sha256, int maxChars) {
+        if (!DocumentBean.isHash(sha256)) {
+            return null;
+        }
+        Path path = pathOf(sha256);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (Reader in = new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[maxChars];
+            int length = 0;
+            int read;
+            while (length < maxChars && (read = in.read(buffer, length, maxChars - length)) > 0) {
+                length += read;
+            }
+            return new String(buffer, 0, length);
+        } catch (IOException e) {
+            logger.warning("Erro ao ler texto extraído do documento " + sha256 + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void delete(String sha256) {
+        try {
+            Files.deleteIfExists(pathOf(sha256));
+        } catch (IOException e) {
+            logger.warning("Erro ao apagar texto extraído do documento " + sha256 + ": " + e.getMessage());
+        }
+    }
+
+    private static Path pathOf(String sha256) {
+        return Paths.get(TEXT_DIR, sha256.substring(0, 2), sha256 + ".txt.gz");
+    }
+}
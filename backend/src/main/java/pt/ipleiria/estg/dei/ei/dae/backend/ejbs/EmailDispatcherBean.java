@@ -0,0 +1,255 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Metrics;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Settings;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the emails handed over by the outbox relay on a dedicated thread from the ManagedThreadFactory,
+ * not the shared executor, over a single SMTP connection,
+ * kept open between messages and closed after "centroXYZ.mail.idleSeconds" without mail. Each
+ * delivered email is acknowledged to OutboxBean, which only then removes it from the outbox.
+ * The queue holds at most "centroXYZ.mail.queueCapacity" messages: when it is full, enqueue
+ * waits up to "centroXYZ.mail.enqueueTimeoutMillis" and then rejects the message. A failed
+ * message is retried with exponential backoff up to "centroXYZ.mail.maxAttempts" times.
+ * Sent messages are recorded through SentEmailBean and purged after "centroXYZ.mail.retentionDays".
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class EmailDispatcherBean {
+
+    private static final Logger logger = Logger.getLogger(EmailDispatcherBean.class.getName());
+
+    @Resource(name = "java:/jboss/mail/fakeSMTP")
+    private Session session;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    @EJB
+    private SentEmailBean sentEmailBean;
+
+    @EJB
+    private OutboxBean outboxBean;
+
+    private BlockingQueue<OutgoingEmail> queue;
+    private Duration enqueueTimeout;
+    private Duration idleTimeout;
+    private Duration backoff;
+    private int maxAttempts;
+    private Duration retention;
+
+    private volatile boolean running;
+    private Transport transport;
+    private long lastSentAt;
+
+    private Metrics.Timer sends;
+    private AtomicLong rejected;
+    private AtomicLong retried;
+    private AtomicLong failed;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(Math.max(1, Settings.getInt("centroXYZ.mail.queueCapacity", 10000)));
+        enqueueTimeout = Duration.ofMillis(Math.max(0, Settings.getLong("centroXYZ.mail.enqueueTimeoutMillis", 2000)));
+        idleTimeout = Duration.ofSeconds(Math.max(1, Settings.getLong("centroXYZ.mail.idleSeconds", 30)));
+        backoff = Duration.ofSeconds(Math.max(1, Settings.getLong("centroXYZ.mail.backoffSeconds", 5)));
+        maxAttempts = Math.max(1, Settings.getInt("centroXYZ.mail.maxAttempts", 4));
+        retention = Duration.ofDays(Math.max(1, Settings.getLong("centroXYZ.mail.retentionDays", 30)));
+
+        sends = Metrics.timer("mail.send");
+        rejected = Metrics.counter("mail.rejected");
+        retried = Metrics.counter("mail.retried");
+        failed = Metrics.counter("mail.failed");
+        Metrics.gauge("mail.queue.depth", () -> queue.size());
+
+        running = true;
+        threadFactory.newThread(this::drain).start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+    }
+
+    /**
+     * Returns false when the queue stayed full for the whole enqueue timeout.
+     */
+    public boolean enqueue(String to, String subject, String body) {
+        OutgoingEmail email = new OutgoingEmail(null, to, subject, body);
+        if (offer(email, enqueueTimeout)) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        logger.warning("Fila de emails cheia: email para " + to + " descartado");
+        return false;
+    }
+
+    /**
+     * Never waits: returns false right away when the queue is full, for callers that keep
+     * the message and try again later. The outbox message is acknowledged once delivered.
+     */
+    public boolean tryEnqueue(Long outboxId, String to, String subject, String body) {
+        return queue.offer(new OutgoingEmail(outboxId, to, subject, body));
+    }
+
+    @Schedule(hour = "3", minute = "15", persistent = false)
+    public void purgeSentEmails() {
+        int removed = sentEmailBean.deleteOlderThan(LocalDateTime.now().minus(retention));
+        if (removed > 0) {
+            logger.info("Removed " + removed + " sent emails older than " + retention.toDays() + " days");
+        }
+    }
+
+    private boolean offer(OutgoingEmail email, Duration timeout) {
+        try {
+            return queue.offer(email, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            OutgoingEmail email;
+            try {
+                email = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (email == null) {
+                if (transport != null && System.nanoTime() - lastSentAt > idleTimeout.toNanos()) {
+                    closeTransport();
+                }
+                continue;
+            }
+            deliver(email);
+        }
+        closeTransport();
+    }
+
+    private void deliver(OutgoingEmail email) {
+        long start = System.nanoTime();
+        LocalDateTime sentAt = LocalDateTime.now();
+        try {
+            Message message = new MimeMessage(session);
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.to, false));
+            message.setSubject(email.subject);
+            message.setText(email.body);
+            message.setSentDate(Date.from(sentAt.atZone(ZoneId.systemDefault()).toInstant()));
+            message.saveChanges();
+
+            if (transport == null || !transport.isConnected()) {
+                transport = session.getTransport();
+                transport.connect();
+            }
+            transport.sendMessage(message, message.getAllRecipients());
+            lastSentAt = System.nanoTime();
+            sends.record(System.nanoTime() - start, true);
+
+        } catch (MessagingException | RuntimeException e) {
+            sends.record(System.nanoTime() - start, false);
+            // The connection may be broken: the next message opens a new one
+            closeTransport();
+            retry(email, e);
+            return;
+        }
+
+        // Already delivered: a failure to record it must not send it again
+        try {
+            sentEmailBean.record(email.to, email.subject, email.body, sentAt);
+        } catch (RuntimeException e) {
+            logger.warning("Erro ao registar email enviado para " + email.to + ": " + e.getMessage());
+        }
+        if (email.outboxId != null) {
+            try {
+                outboxBean.acknowledge(email.outboxId);
+            } catch (RuntimeException e) {
+                // The lease expires and the email is sent again
+                logger.warning("Erro ao confirmar entrega da mensagem de outbox " + email.outboxId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void retry(OutgoingEmail email, Exception error) {
+        email.attempts++;
+        if (email.attempts >= maxAttempts) {
+            failed.incrementAndGet();
+            // Still in the outbox: handed over again once its lease expires
+            logger.log(Level.SEVERE, "Email para " + email.to + " não enviado após " + email.attempts + " tentativas: " + error.getMessage());
+            return;
+        }
+
+        retried.incrementAndGet();
+        long delay = backoff.multipliedBy(1L << Math.min(email.attempts - 1, 10)).toMillis();
+        logger.warning("Erro ao enviar email para " + email.to + " (tentativa " + email.attempts + "), nova tentativa em "
+                + delay / 1000 + "s: " + error.getMessage());
+        scheduler.schedule(() -> {
+            if (!offer(email, Duration.ZERO)) {
+                rejected.incrementAndGet();
+                logger.warning("Fila de emails cheia: email para " + email.to + " descartado");
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void closeTransport() {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.fine("Erro ao fechar ligação SMTP: " + e.getMessage());
+        }
+        transport = null;
+    }
+
+    private static class OutgoingEmail {
+        private final Long outboxId;
+        private final String to;
+        private final String subject;
+        private final String body;
+        private int attempts;
+
+        private OutgoingEmail(Long outboxId, String to, String subject, String body) {
+            this.outboxId = outboxId;
+            this.to = to;
+            this.subject = subject;
+            this.body = body;
+        }
+    }
+}
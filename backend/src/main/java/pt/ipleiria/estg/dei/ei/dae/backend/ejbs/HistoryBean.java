@@ -1,38 +1,179 @@
 package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
 
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.hibernate.Session;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.ActivityType;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.History;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.User;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.TimeCursor;
 
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Stateless
 public class HistoryBean {
 
+    // Same scope as the getPublicationActivities named query
+    private static final String PUBLICATION_ACTIVITY = "((h.entity = 'Publication' AND h.entityId = :publicationId) OR " +
+            "(h.entity = 'Comment' AND h.entityId IN " +
+            "(SELECT c.id FROM Comment c WHERE c.publication.id = :publicationId)) OR " +
+            "(h.entity = 'Rating' AND h.entityId IN " +
+            "(SELECT r.id FROM Rating r WHERE r.publication.id = :publicationId)))";
+
+    private static final String INSERT_SQL = "INSERT INTO history_logs "
+            + "(action, description, entity, entity_id, user_username, timestamp) VALUES (?, ?, ?, ?, ?, ?)";
+
     @PersistenceContext
     private EntityManager em;
 
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    @EJB
+    private AuditWriterBean auditWriterBean;
+
+    /**
+     * Except in SYNC mode the row is not written in the caller's transaction: it is handed to
+     * AuditWriterBean once that transaction commits, and dropped if it rolls back.
+     */
     public void logActivity(ActivityType activityType, String description,
                             String entity, Long entityId, User user) {
         try {
-            History history = new History(activityType, description, entity, entityId, user);
-            em.persist(history);
+            if (auditWriterBean.getMode() == AuditWriterBean.Mode.SYNC) {
+                History history = new History(activityType, description, entity, entityId, user);
+                em.persist(history);
+                return;
+            }
+            pendingEntries().add(new AuditWriterBean.Entry(activityType, description, entity, entityId, user.getUsername()));
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Inserts the entries with one JDBC batch in the current transaction.
+     */
+    public void insertBatch(List<AuditWriterBean.Entry> entries) {
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+                for (AuditWriterBean.Entry entry : entries) {
+                    statement.setString(1, entry.getAction().name());
+                    statement.setString(2, entry.getDescription());
+                    statement.setString(3, entry.getEntity());
+                    if (entry.getEntityId() != null) {
+                        statement.setLong(4, entry.getEntityId());
+                    } else {
+                        statement.setNull(4, Types.BIGINT);
+                    }
+                    statement.setString(5, entry.getUsername());
+                    statement.setObject(6, entry.getTimestamp());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    // One list and one synchronization per transaction, however many activities it logs
+    @SuppressWarnings("unchecked")
+    private List<AuditWriterBean.Entry> pendingEntries() {
+        List<AuditWriterBean.Entry> entries = (List<AuditWriterBean.Entry>) transactions.getResource(HistoryBean.class);
+        if (entries == null) {
+            List<AuditWriterBean.Entry> created = new ArrayList<>();
+            transactions.putResource(HistoryBean.class, created);
+            transactions.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED && !created.isEmpty()) {
+                        auditWriterBean.submit(created);
+                    }
+                }
+            });
+            entries = created;
+        }
+        return entries;
+    }
+
 
     public History find(Long id) {
         return em.find(History.class, id);
     }
 
-    public List<History> getAllHistory() {
-        return em.createNamedQuery("getAllHistoryLogs", History.class).getResultList();
+    /**
+     * Newest first, keyset-paginated on (timestamp, id). Every filter is optional. No filter, or
+     * a single user, action or entity filter, is read in order from the matching composite
+     * index on History. The publication scope (an OR over the publication, its comments and its
+     * ratings) and combinations of filters have no index of their own: the database picks one
+     * of these indexes to find the matching rows and sorts them, so those pages cost more as
+     * the matching history grows.
+     */
+    public PageDTO<History> getPage(Filter filter, TimeCursor after, int limit) {
+        Map<String, Object> parameters = new HashMap<>();
+        List<String> conditions = new ArrayList<>();
+
+        if (filter.action != null) {
+            conditions.add("h.action = :action");
+            parameters.put("action", filter.action);
+        }
+        if (filter.entity != null) {
+            conditions.add("h.entity = :entity");
+            parameters.put("entity", filter.entity);
+        }
+        if (filter.username != null) {
+            conditions.add("h.user.username = :username");
+            parameters.put("username", filter.username);
+        }
+        if (filter.publicationId != null) {
+            conditions.add(PUBLICATION_ACTIVITY);
+            parameters.put("publicationId", filter.publicationId);
+        }
+        if (filter.from != null) {
+            conditions.add("h.timestamp >= :from");
+            parameters.put("from", filter.from);
+        }
+        if (filter.to != null) {
+            conditions.add("h.timestamp < :to");
+            parameters.put("to", filter.to);
+        }
+        if (after != null) {
+            conditions.add("(h.timestamp < :timestamp OR (h.timestamp = :timestamp AND h.id < :id))");
+            parameters.put("timestamp", after.getTimestamp());
+            parameters.put("id", after.getId());
+        }
+
+        String jpql = "SELECT h FROM History h JOIN FETCH h.user " +
+                (conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ") +
+                "ORDER BY h.timestamp DESC, h.id DESC";
+        TypedQuery<History> query = em.createQuery(jpql, History.class);
+        parameters.forEach(query::setParameter);
+        List<History> activities = query.setMaxResults(limit + 1).getResultList();
+
+        String next = null;
+        if (activities.size() > limit) {
+            activities = activities.subList(0, limit);
+            History last = activities.get(limit - 1);
+            next = new TimeCursor(last.getTimestamp(), last.getId()).encode();
+        }
+        return new PageDTO<>(activities, next);
     }
 
     public List<History> getRecentHistory(int limit){
@@ -41,23 +182,17 @@ public class HistoryBean {
                 .getResultList();
     }
 
-    public List<History> getHistoryByType(ActivityType activityType) {
-        return em.createQuery(
-                        "SELECT h FROM History h WHERE h.action = :type ORDER BY h.timestamp DESC",
-                        History.class)
-                .setParameter("type", activityType)
-                .getResultList();
-    }
-
-    public List<History> getUserHistory(String username) {
+    public List<History> getUserHistory(String username, int limit) {
         return em.createNamedQuery("getHistoryLogsByUser", History.class)
                 .setParameter("username", username)
+                .setMaxResults(limit)
                 .getResultList();
     }
 
-    public List<History> getPublicationHistory(Long entityId) {
+    public List<History> getPublicationHistory(Long entityId, int limit) {
         return em.createNamedQuery("getPublicationActivities", History.class)
                 .setParameter("publicationId", entityId)
+                .setMaxResults(limit)
                 .getResultList();
     }
 
@@ -69,4 +204,50 @@ public class HistoryBean {
                 .setMaxResults(limit)
                 .getResultList();
     }
+
+    /**
+     * Criteria for getPage; null fields are not filtered on. The time range includes from and
+     * excludes to.
+     */
+    public static class Filter {
+        private ActivityType action;
+        private String entity;
+        private String username;
+        private Long publicationId;
+        private LocalDateTime from;
+        private LocalDateTime to;
+
+        public Filter action(ActivityType action) {
+            this.action = action;
+            return this;
+        }
+
+        public Filter entity(String entity) {
+            this.entity = entity;
+            return this;
+        }
+
+        public Filter username(String username) {
+            this.username = username;
+            return this;
+        }
+
+        /**
+         * Activity on the publication itself and on its comments and ratings.
+         */
+        public Filter publication(Long publicationId) {
+            this.publicationId = publicationId;
+            return this;
+        }
+
+        public Filter from(LocalDateTime from) {
+            this.from = from;
+            return this;
+        }
+
+        public Filter to(LocalDateTime to) {
+            this.to = to;
+            return this;
+        }
+    }
 }
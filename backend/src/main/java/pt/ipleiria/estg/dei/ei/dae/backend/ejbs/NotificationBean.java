@@ -0,0 +1,115 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.NotificationEvent;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Publication;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Tag;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Stateless
+public class NotificationBean {
+
+    private static final int RECIPIENT_BATCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @EJB
+    private EmailBean emailBean;
+
+    public void notifyTagSubscribers(Tag tag, Publication publication, String message) {
+        em.persist(new NotificationEvent(tag.getId(), publication.getId(), message + "\nPublication: " + publication.getTitle()));
+    }
+
+    public void notifyPublicationSubscribers(Publication publication, String message) {
+        em.persist(new NotificationEvent(null, publication.getId(), message + "\nPublication: " + publication.getTitle()));
+    }
+
+    /**
+     * Once the oldest pending event is window old, sends every subscriber one email with all
+     * the pending events meant for them (at most maxEvents per run) and removes those events.
+     * The subscribers are loaded once per distinct tag and publication of the run, in batches,
+     * not once per event. Returns the number of digests sent.
+     */
+    public int sendDigests(Duration window, int maxEvents) {
+        LocalDateTime oldest = em.createNamedQuery("getOldestNotificationEvent", LocalDateTime.class).getSingleResult();
+        LocalDateTime now = LocalDateTime.now();
+        if (oldest == null || oldest.isAfter(now.minus(window))) {
+            return 0;
+        }
+
+        List<NotificationEvent> events = em.createNamedQuery("getPendingNotificationEvents", NotificationEvent.class)
+                .setParameter("until", now)
+                .setMaxResults(maxEvents)
+                .getResultList();
+
+        Set<Long> tagIds = new LinkedHashSet<>();
+        Set<Long> publicationIds = new LinkedHashSet<>();
+        for (NotificationEvent event : events) {
+            if (event.getTagId() != null) {
+                tagIds.add(event.getTagId());
+            } else {
+                publicationIds.add(event.getPublicationId());
+            }
+        }
+        Map<Long, List<String>> tagSubscribers = subscribers("getTagSubscriberEmails", "tagIds", tagIds);
+        Map<Long, List<String>> publicationSubscribers =
+                subscribers("getPublicationSubscriberEmails", "publicationIds", publicationIds);
+
+        Map<String, Set<String>> digests = new LinkedHashMap<>();
+        List<Long> ids = new ArrayList<>(events.size());
+        for (NotificationEvent event : events) {
+            ids.add(event.getId());
+            List<String> recipients = event.getTagId() != null
+                    ? tagSubscribers.getOrDefault(event.getTagId(), List.of())
+                    : publicationSubscribers.getOrDefault(event.getPublicationId(), List.of());
+            for (String email : recipients) {
+                digests.computeIfAbsent(email, e -> new LinkedHashSet<>()).add(event.getMessage());
+            }
+        }
+
+        for (Map.Entry<String, Set<String>> digest : digests.entrySet()) {
+            Set<String> messages = digest.getValue();
+            StringBuilder body = new StringBuilder("New publications and comments on publications with tags you follow:\n");
+            for (String message : messages) {
+                body.append("\n- ").append(message.replace("\n", "\n  ")).append('\n');
+            }
+            emailBean.send(digest.getKey(), "Updates on publications with your tags (" + messages.size() + ")", body.toString());
+        }
+
+        if (!ids.isEmpty()) {
+            em.createNamedQuery("deleteNotificationEvents")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+        return digests.size();
+    }
+
+    // Subscriber emails by tag or publication id, for a query returning (id, email) rows
+    private Map<Long, List<String>> subscribers(String query, String parameter, Collection<Long> ids) {
+        Map<Long, List<String>> subscribers = new HashMap<>();
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += RECIPIENT_BATCH_SIZE) {
+            List<Object[]> rows = em.createNamedQuery(query, Object[].class)
+                    .setParameter(parameter, all.subList(from, Math.min(from + RECIPIENT_BATCH_SIZE, all.size())))
+                    .getResultList();
+            for (Object[] row : rows) {
+                subscribers.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+            }
+        }
+        return subscribers;
+    }
+}
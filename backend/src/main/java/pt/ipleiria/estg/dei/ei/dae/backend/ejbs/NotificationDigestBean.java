@@ -0,0 +1,40 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Settings;
+
+import java.time.Duration;
+import java.util.logging.Logger;
+
+/**
+ * Tag subscribers get at most one email per "centroXYZ.notifications.digestMinutes" with
+ * everything that happened on their tags, instead of one email per event.
+ */
+@Singleton
+public class NotificationDigestBean {
+
+    private static final Logger logger = Logger.getLogger(NotificationDigestBean.class.getName());
+
+    @EJB
+    private NotificationBean notificationBean;
+
+    private Duration window;
+    private int maxEvents;
+
+    @PostConstruct
+    public void init() {
+        window = Duration.ofMinutes(Math.max(1, Settings.getLong("centroXYZ.notifications.digestMinutes", 15)));
+        maxEvents = Math.max(1, Settings.getInt("centroXYZ.notifications.maxEventsPerDigest", 5000));
+    }
+
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void sendDigests() {
+        int sent = notificationBean.sendDigests(window, maxEvents);
+        if (sent > 0) {
+            logger.info("Sent " + sent + " tag notification digests");
+        }
+    }
+}
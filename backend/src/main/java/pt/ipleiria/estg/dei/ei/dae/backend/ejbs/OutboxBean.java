@@ -0,0 +1,144 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.OutboxMessage;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.logging.Logger;
+
+@Stateless
+public class OutboxBean {
+
+    private static final Logger logger = Logger.getLogger(OutboxBean.class.getName());
+
+    // Hibernate's LockOptions.SKIP_LOCKED: rows claimed by another relay are skipped instead of waited for
+    private static final int SKIP_LOCKED = -2;
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    // How long a message handed to the dispatcher stays claimed; if it is not acknowledged by then
+    // (server restart, delivery given up) it is handed over again
+    private static final Duration IN_FLIGHT_LEASE = Duration.ofMinutes(10);
+
+    private static final int MAX_HANDOFFS = 5;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    @EJB
+    private OutboxRelayBean outboxRelayBean;
+
+    @EJB
+    private EmailDispatcherBean emailDispatcherBean;
+
+    /**
+     * Joins the caller's transaction: the email is only sent if that transaction commits.
+     */
+    public void addEmail(String to, String subject, String body) {
+        JsonObject payload = Json.createObjectBuilder()
+                .add("to", to)
+                .add("subject", subject)
+                .add("body", body)
+                .build();
+        add(OutboxMessage.EMAIL, payload.toString());
+    }
+
+    public void add(String type, String payload) {
+        em.persist(new OutboxMessage(type, payload));
+
+        // One wake-up per transaction, however many messages it writes
+        if (transactions.getResource(OutboxBean.class) == null) {
+            transactions.putResource(OutboxBean.class, Boolean.TRUE);
+            transactions.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        outboxRelayBean.wake();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Hands up to limit due messages over. A message stays in the outbox, leased for
+     * IN_FLIGHT_LEASE, until the dispatcher acknowledges its delivery, so delivery is
+     * at-least-once: a crash between sending and acknowledging sends it again. A message that
+     * cannot be handed over now (e.g. the mail queue is full) is tried again after RETRY_DELAY,
+     * and one handed over MAX_HANDOFFS times without being delivered is dropped. Returns the
+     * number of messages claimed.
+     */
+    public int relayBatch(int limit) {
+        List<OutboxMessage> messages = em.createNamedQuery("getDueOutboxMessages", OutboxMessage.class)
+                .setParameter("now", LocalDateTime.now())
+                .setMaxResults(limit)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.lock.timeout", SKIP_LOCKED)
+                .getResultList();
+
+        for (OutboxMessage message : messages) {
+            if (!OutboxMessage.EMAIL.equals(message.getType())) {
+                logger.warning("Mensagem de outbox " + message.getId() + " com tipo desconhecido descartada: " + message.getType());
+                em.remove(message);
+            } else if (message.getAttempts() >= MAX_HANDOFFS) {
+                logger.severe("Mensagem de outbox " + message.getId() + " descartada: não entregue após "
+                        + message.getAttempts() + " tentativas");
+                em.remove(message);
+            } else if (relay(message)) {
+                message.setAttempts(message.getAttempts() + 1);
+                message.setAvailableAt(LocalDateTime.now().plus(IN_FLIGHT_LEASE));
+            } else {
+                message.setAvailableAt(LocalDateTime.now().plus(RETRY_DELAY));
+            }
+        }
+        return messages.size();
+    }
+
+    /**
+     * Called by the dispatcher once the message has been delivered.
+     */
+    public void acknowledge(Long id) {
+        OutboxMessage message = em.find(OutboxMessage.class, id);
+        if (message != null) {
+            em.remove(message);
+        }
+    }
+
+    public long countPending() {
+        return em.createNamedQuery("countOutboxMessages", Long.class).getSingleResult();
+    }
+
+    private boolean relay(OutboxMessage message) {
+        JsonObject payload;
+        try (JsonReader reader = Json.createReader(new StringReader(message.getPayload()))) {
+            payload = reader.readObject();
+        }
+        return emailDispatcherBean.tryEnqueue(
+                message.getId(),
+                payload.getString("to"),
+                payload.getString("subject"),
+                payload.getString("body")
+        );
+    }
+}
@@ -0,0 +1,80 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Metrics;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Drains the outbox in batches of BATCH_SIZE, each batch in its own transaction. It is woken
+ * right after a transaction that wrote to the outbox commits, and every 15 seconds to pick up
+ * messages that had to wait, and messages whose delivery lease expired without an
+ * acknowledgement (e.g. lost from the dispatcher queue by a restart).
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class OutboxRelayBean {
+
+    private static final Logger logger = Logger.getLogger(OutboxRelayBean.class.getName());
+
+    private static final int BATCH_SIZE = 200;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @EJB
+    private OutboxBean outboxBean;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean wokenWhileDraining = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        Metrics.gauge("outbox.pending", () -> outboxBean.countPending());
+    }
+
+    public void wake() {
+        if (!draining.compareAndSet(false, true)) {
+            wokenWhileDraining.set(true);
+            return;
+        }
+        try {
+            executor.submit(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            logger.warning("Outbox relay not started: " + e.getMessage());
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/15", persistent = false)
+    public void poll() {
+        wake();
+    }
+
+    private void drain() {
+        try {
+            do {
+                wokenWhileDraining.set(false);
+                while (outboxBean.relayBatch(BATCH_SIZE) == BATCH_SIZE) {
+                    // Full batch: there may be more
+                }
+            } while (wokenWhileDraining.get());
+        } catch (Exception e) {
+            logger.warning("Outbox relay failed: " + e.getMessage());
+        } finally {
+            draining.set(false);
+        }
+    }
+}
@@ -2,24 +2,25 @@ package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
 
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
-import jakarta.inject.Inject;
-import jakarta.ejb.Asynchronous;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
 import org.hibernate.Hibernate;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.*;
 import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityNotFoundException;
-import pt.ipleiria.estg.dei.ei.dae.backend.services.AIService;
-import pt.ipleiria.estg.dei.ei.dae.backend.utils.PdfTextExtractor;
-import pt.ipleiria.estg.dei.ei.dae.backend.utils.ZipTextExtractor;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.InvertedIndex;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.PageCursor;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.QueryCounter;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.SnippetHighlighter;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.logging.Logger;
 
 @Stateless
@@ -27,6 +28,40 @@ public class PublicationBean {
 
     private static final Logger logger = Logger.getLogger(PublicationBean.class.getName());
 
+    public static final String SORT_RECENT = "recent";
+    public static final String SORT_COMMENTS = "comments";
+    public static final String SORT_RATING = "rating";
+    public static final String SORT_SEARCH = "search";
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Average rating in millionths, truncated by integer division: an exact value, so comparing
+    // it with the one carried by a cursor never skips or repeats a row through rounding
+    private static final String AVERAGE_RATING =
+            "CASE WHEN p.ratingCount = 0 THEN 0 ELSE (p.ratingSum * 1000000) / p.ratingCount END";
+
+    private static final int FETCH_BATCH_SIZE = 500;
+
+    // eager to-one associations and User.subscribedTags are batch loaded (hibernate.default_batch_fetch_size)
+    private static final int FETCH_EAGER_SLACK = 4;
+
+    private static final int CONTENT_SNIPPETS = 3;
+    // Snippets are cut from the start of the document text only, so a hit never decompresses a whole book
+    private static final int SNIPPET_SOURCE_CHARS = 200_000;
+
+    public enum Fetch {
+        COMMENTS("SELECT p FROM Publication p LEFT JOIN FETCH p.comments c LEFT JOIN FETCH c.user WHERE p.id IN :ids"),
+        RATINGS("SELECT p FROM Publication p LEFT JOIN FETCH p.ratings r LEFT JOIN FETCH r.user WHERE p.id IN :ids"),
+        TAGS("SELECT p FROM Publication p LEFT JOIN FETCH p.tags WHERE p.id IN :ids");
+
+        private final String jpql;
+
+        Fetch(String jpql) {
+            this.jpql = jpql;
+        }
+    }
+
     @PersistenceContext
     private EntityManager em;
 
@@ -40,13 +75,19 @@ public class PublicationBean {
     private TagBean tagBean;
 
     @EJB
-    private EmailBean emailBean;
+    private NotificationBean notificationBean;
 
     @EJB
     private DocumentBean documentBean;
 
-    @Inject
-    private AIService aiService;
+    @EJB
+    private SearchIndexBean searchIndexBean;
+
+    @EJB
+    private DocumentTextBean documentTextBean;
+
+    @EJB
+    private SummaryJobBean summaryJobBean;
 
     public Publication create(String title, String description, ScientificArea scientificArea,
                               LocalDate publicationDate, List<String> authors, User submitter,
@@ -56,11 +97,21 @@ public class PublicationBean {
             throw new MyEntityNotFoundException("Submitter user not found");
         }
 
-        byte[] fileBytes = fileInputStream.readAllBytes();
+        Document document = documentBean.create(fileName, fileInputStream, fileType);
+
+        return create(title, description, scientificArea, publicationDate, authors, submitter, document, tagIds);
+    }
 
-        InputStream streamForDocument = new java.io.ByteArrayInputStream(fileBytes);
+    public Publication create(String title, String description, ScientificArea scientificArea,
+                              LocalDate publicationDate, List<String> authors, User submitter,
+                              Document document, List<Long> tagIds) throws MyEntityNotFoundException {
+
+        if (submitter == null) {
+            throw new MyEntityNotFoundException("Submitter user not found");
+        }
 
-        Document document = documentBean.create(fileName, submitter.getUsername(), streamForDocument, fileType);
+        String fileName = document.getFileName();
+        FileType fileType = document.getFileType();
 
         String finalDescription = description;
         boolean needsAiGeneration = (description == null || description.trim().isEmpty());
@@ -94,6 +145,8 @@ public class PublicationBean {
             }
         }
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.PUBLICATION_CREATED,
                 "Publication created: " + title + " with file: " + fileName,
@@ -103,9 +156,9 @@ public class PublicationBean {
         );
 
         if (needsAiGeneration) {
-            logger.info("Iniciando geração assíncrona de resumo para publicação ID: " + publication.getId());
-            generateSummaryAsync(publication.getId(), fileBytes, fileType, submitter.getUsername());
+            logger.info("Resumo da publicação ID " + publication.getId() + " colocado na fila de processamento");
         }
+        summaryJobBean.enqueue(publication.getId(), needsAiGeneration, submitter.getUsername());
 
         return publication;
     }
@@ -147,6 +200,8 @@ public class PublicationBean {
             }
         }
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.PUBLICATION_CREATED,
                 "Publication created: " + title + " (test data - no physical file)",
@@ -159,6 +214,10 @@ public class PublicationBean {
     }
 
 
+    public int recomputeCounters() {
+        return em.createNamedQuery("recomputePublicationCounters").executeUpdate();
+    }
+
     public Publication find(Long id) {
         return em.find(Publication.class, id);
     }
@@ -202,70 +261,162 @@ public class PublicationBean {
     }
 
     public List<Publication> getAllWithAllDetails() {
-        List<Publication> publications = getAll();
-        publications.forEach(p -> {
-            Hibernate.initialize(p.getComments());
-            Hibernate.initialize(p.getRatings());
-            Hibernate.initialize(p.getTags());
-        });
-        return publications;
+        return fetch(getAll(), Fetch.COMMENTS, Fetch.RATINGS, Fetch.TAGS);
     }
 
     public List<Publication> getAllVisibleWithAllDetails() {
-        List<Publication> publications = getAllVisible();
-        publications.forEach(p -> {
-            Hibernate.initialize(p.getComments());
-            Hibernate.initialize(p.getRatings());
-            Hibernate.initialize(p.getTags());
-        });
-        return publications;
+        return fetch(getAllVisible(), Fetch.COMMENTS, Fetch.RATINGS, Fetch.TAGS);
     }
 
-    public List<Publication> getAllWithComments() {
-        List<Publication> publications = getAll();
-        publications.forEach(p -> Hibernate.initialize(p.getComments()));
-        return publications;
-    }
+    /**
+     * Initializes the given associations for a whole result set with one query per
+     * association and batch of ids, instead of one query per publication.
+     */
+    public List<Publication> fetch(List<Publication> publications, Fetch... associations) {
+        List<Long> ids = publications.stream().map(Publication::getId).toList();
+
+        for (int from = 0; from < ids.size(); from += FETCH_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + FETCH_BATCH_SIZE, ids.size()));
 
-    public List<Publication> getAllVisibleWithComments() {
-        List<Publication> publications = getAllVisible();
-        publications.forEach(p -> Hibernate.initialize(p.getComments()));
+            QueryCounter.expectAtMost("PublicationBean.fetch", associations.length + FETCH_EAGER_SLACK, () -> {
+                for (Fetch association : associations) {
+                    em.createQuery(association.jpql, Publication.class)
+                            .setParameter("ids", batch)
+                            .getResultList();
+                }
+            });
+        }
         return publications;
     }
 
-    public List<Publication> getAllWithRatings() {
-        List<Publication> publications = getAll();
-        publications.forEach(p -> Hibernate.initialize(p.getRatings()));
-        return publications;
+    public PageDTO<Publication> getPage(String sort, boolean includeHidden, PageCursor after, int limit,
+                                        Fetch... associations) {
+        if (after != null && !after.getSort().equals(sort)) {
+            throw new IllegalArgumentException("Cursor não corresponde ao critério de ordenação");
+        }
+
+        List<Object[]> keys = getSortKeys(sort, includeHidden, after, limit + 1);
+        List<Object[]> pageKeys = keys.subList(0, Math.min(keys.size(), limit));
+        List<Publication> publications = fetch(hydrate(idsOf(pageKeys)), associations);
+
+        String next = null;
+        if (keys.size() > limit) {
+            Object[] last = keys.get(limit - 1);
+            next = new PageCursor(
+                    sort,
+                    ((Number) last[1]).doubleValue(),
+                    (LocalDate) last[2],
+                    (Long) last[0]
+            ).encode();
+        }
+
+        return new PageDTO<>(publications, next);
+    }
+
+    public List<Publication> getSorted(String sort, boolean includeHidden) {
+        return hydrate(idsOf(getSortKeys(sort, includeHidden, null, 0)));
+    }
+
+    private static List<Long> idsOf(List<Object[]> keys) {
+        return keys.stream().map(key -> (Long) key[0]).toList();
+    }
+
+    /**
+     * Orders publications in the database and returns only (id, sort value, publicationDate)
+     * rows. Comment and rating ranks come from the denormalized counters on Publication.
+     */
+    private List<Object[]> getSortKeys(String sort, boolean includeHidden, PageCursor after, int maxResults) {
+        String visibility = includeHidden ? "" : "p.visible = true";
+        String keyset = "(p.publicationDate < :date OR (p.publicationDate = :date AND p.id < :id))";
+        String jpql;
+
+        switch (sort) {
+            case SORT_RECENT:
+                jpql = "SELECT p.id, 0.0, p.publicationDate FROM Publication p " +
+                        where(visibility, after != null ? keyset : "") +
+                        "ORDER BY p.publicationDate DESC, p.id DESC";
+                break;
+            case SORT_COMMENTS:
+                jpql = "SELECT p.id, p.commentCount, p.publicationDate FROM Publication p " +
+                        where(visibility, after != null
+                                ? "(p.commentCount < :value OR (p.commentCount = :value AND " + keyset + "))"
+                                : "") +
+                        "ORDER BY p.commentCount DESC, p.publicationDate DESC, p.id DESC";
+                break;
+            case SORT_RATING:
+                jpql = "SELECT p.id, " + AVERAGE_RATING + ", p.publicationDate FROM Publication p " +
+                        where(visibility, after != null
+                                ? "(" + AVERAGE_RATING + " < :value OR (" + AVERAGE_RATING + " = :value AND " + keyset + "))"
+                                : "") +
+                        "ORDER BY " + AVERAGE_RATING + " DESC, p.publicationDate DESC, p.id DESC";
+                break;
+            default:
+                throw new IllegalArgumentException("Critério de ordenação inválido");
+        }
+
+        var query = em.createQuery(jpql, Object[].class);
+        if (maxResults > 0) {
+            query.setMaxResults(maxResults);
+        }
+        if (after != null) {
+            query.setParameter("date", after.getPublicationDate());
+            query.setParameter("id", after.getId());
+            if (SORT_COMMENTS.equals(sort)) {
+                query.setParameter("value", after.getValue().intValue());
+            } else if (SORT_RATING.equals(sort)) {
+                query.setParameter("value", after.getValue().longValue());
+            }
+        }
+        return query.getResultList();
     }
 
-    public List<Publication> getAllVisibleWithRatings() {
-        List<Publication> publications = getAllVisible();
-        publications.forEach(p -> Hibernate.initialize(p.getRatings()));
+    private List<Publication> hydrate(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Publication> byId = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += FETCH_BATCH_SIZE) {
+            em.createQuery(
+                            "SELECT p FROM Publication p JOIN FETCH p.author LEFT JOIN FETCH p.document WHERE p.id IN :ids",
+                            Publication.class
+                    )
+                    .setParameter("ids", ids.subList(from, Math.min(from + FETCH_BATCH_SIZE, ids.size())))
+                    .getResultList()
+                    .forEach(p -> byId.put(p.getId(), p));
+        }
+
+        List<Publication> publications = new ArrayList<>();
+        for (Long id : ids) {
+            Publication publication = byId.get(id);
+            if (publication != null) {
+                publications.add(publication);
+            }
+        }
         return publications;
     }
 
-
+    private static String where(String... conditions) {
+        List<String> present = new ArrayList<>();
+        for (String condition : conditions) {
+            if (!condition.isEmpty()) {
+                present.add(condition);
+            }
+        }
+        return present.isEmpty() ? "" : "WHERE " + String.join(" AND ", present) + " ";
+    }
 
     public List<Publication> getByUser(String username) throws MyEntityNotFoundException {
 
         if(em.find(User.class, username) == null){
             throw new MyEntityNotFoundException("User not found: " + username);
         }
-        List<Publication> publications = em.createQuery(
-                        "SELECT p FROM Publication p WHERE p.author.username = :username ORDER BY p.publicationDate DESC",
+        return em.createQuery(
+                        "SELECT p FROM Publication p LEFT JOIN FETCH p.document WHERE p.author.username = :username ORDER BY p.publicationDate DESC",
                         Publication.class
                 )
                 .setParameter("username", username)
                 .getResultList();
-
-        publications.forEach(p -> {
-            Hibernate.initialize(p.getComments());
-            Hibernate.initialize(p.getRatings());
-            Hibernate.initialize(p.getTags());
-        });
-
-        return publications;
     }
 
     public List<Publication> getByTag(String tagName) {
@@ -278,25 +429,68 @@ public class PublicationBean {
     }
 
     public List<Publication> search(String searchTerm) {
-        return em.createQuery(
-                        "SELECT p FROM Publication p WHERE (LOWER(p.title) LIKE LOWER(:search) OR LOWER(p.description) LIKE LOWER(:search)) AND p.visible = true ORDER BY p.publicationDate DESC",
-                        Publication.class
-                )
-                .setParameter("search", "%" + searchTerm + "%")
-                .getResultList();
+        return hydrate(searchIndexBean.search(searchTerm).stream().map(InvertedIndex.Hit::getId).toList());
+    }
+
+    /**
+     * Metadata search that also initializes the comments when there are fewer than
+     * commentsBelow results. Both run in this transaction: once it ends the publications are
+     * detached and their comments can no longer be loaded.
+     */
+    public List<Publication> searchWithComments(String searchTerm, int commentsBelow) {
+        List<Publication> publications = search(searchTerm);
+        if (publications.size() < commentsBelow) {
+            fetch(publications, Fetch.COMMENTS);
+        }
+        return publications;
     }
 
-    public List<Publication> searchWithComments(String searchTerm) {
-        return em.createQuery(
-                        "SELECT DISTINCT p FROM Publication p " +
-                                "LEFT JOIN FETCH p.comments " +
-                                "WHERE (LOWER(p.title) LIKE LOWER(:search) OR LOWER(p.description) LIKE LOWER(:search)) " +
-                                "AND p.visible = true " +
-                                "ORDER BY p.publicationDate DESC",
-                        Publication.class
-                )
-                .setParameter("search", "%" + searchTerm + "%")
-                .getResultList();
+    public List<Publication> searchContent(String searchTerm) {
+        return hydrate(searchIndexBean.searchContent(searchTerm).stream().map(InvertedIndex.Hit::getId).toList());
+    }
+
+    /**
+     * One page of search results. The ranking and the total come from the search index,
+     * so the database is only asked for the publications of the requested page.
+     */
+    public PageDTO<Publication> searchPage(String searchTerm, boolean content, PageCursor after, int limit,
+                                           Fetch... associations) {
+        if (after != null && !after.getSort().equals(SORT_SEARCH)) {
+            throw new IllegalArgumentException("Cursor não corresponde ao critério de ordenação");
+        }
+
+        List<InvertedIndex.Hit> hits = content
+                ? searchIndexBean.searchContent(searchTerm)
+                : searchIndexBean.search(searchTerm);
+
+        int from = 0;
+        if (after != null) {
+            double score = after.getValue() != null ? after.getValue() : Double.MAX_VALUE;
+            while (from < hits.size() && (hits.get(from).getScore() > score
+                    || (hits.get(from).getScore() == score && hits.get(from).getId() >= after.getId()))) {
+                from++;
+            }
+        }
+
+        List<InvertedIndex.Hit> pageHits = hits.subList(from, Math.min(hits.size(), from + limit));
+        List<Publication> publications = fetch(
+                hydrate(pageHits.stream().map(InvertedIndex.Hit::getId).toList()), associations);
+
+        String next = null;
+        if (from + limit < hits.size()) {
+            InvertedIndex.Hit last = pageHits.get(pageHits.size() - 1);
+            next = new PageCursor(SORT_SEARCH, last.getScore(), null, last.getId()).encode();
+        }
+
+        return new PageDTO<>(publications, next, (long) hits.size());
+    }
+
+    public List<String> getContentSnippets(Publication publication, String searchTerm) {
+        if (publication.getDocument() == null) {
+            return new ArrayList<>();
+        }
+        String text = documentTextBean.load(publication.getDocument().getSha256(), SNIPPET_SOURCE_CHARS);
+        return SnippetHighlighter.highlight(text, searchTerm, CONTENT_SNIPPETS);
     }
 
     public List<Publication> getByScientificArea(ScientificArea area) {
@@ -359,6 +553,8 @@ public class PublicationBean {
         publication.setPublicationDate(publicationDate);
         publication.setAuthors(authors);
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.PUBLICATION_UPDATED,
                 "Publication updated: " + title,
@@ -378,7 +574,7 @@ public class PublicationBean {
 
         if (publication.getDocument() != null) {
             Long oldDocId = publication.getDocument().getId();
-
+            searchIndexBean.removeContent(publicationId);
         }
 
         Document newDocument = new Document(fileName, "home" ,fileType);
@@ -402,6 +598,8 @@ public class PublicationBean {
 
         publication.setVisible(false);
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.PUBLICATION_HIDDEN,
                 "Publication hidden: " + publication.getTitle(),
@@ -419,6 +617,8 @@ public class PublicationBean {
 
         publication.setVisible(true);
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.PUBLICATION_SHOWN,
                 "Publication shown: " + publication.getTitle(),
@@ -453,6 +653,9 @@ public class PublicationBean {
                 performedBy
         );
 
+        searchIndexBean.remove(id);
+        summaryJobBean.deleteByPublication(id);
+        documentBean.release(publication.getDocument());
         em.remove(publication);
     }
 
@@ -470,6 +673,8 @@ public class PublicationBean {
 
         publication.addTag(tag);
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.TAG_ADDED_TO_PUBLICATION,
                 "Tag '" + tag.getName() + "' added to publication: " + publication.getTitle(),
@@ -478,7 +683,7 @@ public class PublicationBean {
                 performedBy
         );
 
-        emailBean.notifyTagSubscribers(tag, publication, "New publication with tag: " + tag.getName());
+        notificationBean.notifyTagSubscribers(tag, publication, "New publication with tag: " + tag.getName());
     }
 
     public void removeTag(Long publicationId, Long tagId, User performedBy) throws MyEntityNotFoundException {
@@ -491,6 +696,8 @@ public class PublicationBean {
 
         publication.removeTag(tag);
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.TAG_REMOVED_FROM_PUBLICATION,
                 "Tag '" + tag.getName() + "' removed from publication: " + publication.getTitle(),
@@ -537,6 +744,8 @@ public class PublicationBean {
 
         publication.setDescription(newDescription);
 
+        searchIndexBean.index(publication);
+
         historyBean.logActivity(
                 ActivityType.PUBLICATION_UPDATED,
                 "Summary regenerated for publication: " + publication.getTitle(),
@@ -546,63 +755,49 @@ public class PublicationBean {
         );
     }
 
-    @Asynchronous
-    public void generateSummaryAsync(Long publicationId, byte[] fileBytes,
-                                              FileType fileType, String submitterUsername) {
-        try {
-            String resumoAI = null;
-            String textoDocumento = null;
-
-            if (fileType == FileType.PDF) {
-                InputStream streamForAI = new ByteArrayInputStream(fileBytes);
-                textoDocumento = PdfTextExtractor.extractText(streamForAI);
-
-            } else if (fileType == FileType.ZIP) {
-                InputStream streamForZip = new ByteArrayInputStream(fileBytes);
-                textoDocumento = ZipTextExtractor.extractTextFromPDFs(streamForZip);
-            }
+    public void applySummary(Long publicationId, String summary, String submitterUsername) {
+        Publication publication = find(publicationId);
+        if (publication == null) {
+            return;
+        }
 
-            if (textoDocumento != null && !textoDocumento.trim().isEmpty()) {
-                resumoAI = aiService.generateSummary(textoDocumento);
-            }
+        if (summary != null && !summary.trim().isEmpty()) {
+            publication.setDescription(summary);
+        } else {
+            publication.setDescription("Resumo automático não disponível - Por favor adicione uma descrição manualmente");
+            logger.warning("Não foi possível gerar resumo para publicação ID: " + publicationId);
+        }
 
-            Publication publication = find(publicationId);
-            if (publication != null) {
-                if (resumoAI != null && !resumoAI.trim().isEmpty()) {
-                    publication.setDescription(resumoAI);
-                } else {
-                    publication.setDescription("Resumo automático não disponível - Por favor adicione uma descrição manualmente");
-                    logger.warning("Não foi possível gerar resumo para publicação ID: " + publicationId);
-                }
+        searchIndexBean.index(publication);
 
-                em.merge(publication);
-
-                User submitter = userBean.find(submitterUsername);
-                if (submitter != null) {
-                    historyBean.logActivity(
-                            ActivityType.PUBLICATION_UPDATED,
-                            "AI summary generated for publication: " + publication.getTitle(),
-                            "Publication",
-                            publicationId,
-                            submitter
-                    );
-                }
-            }
+        User submitter = em.find(User.class, submitterUsername);
+        if (submitter != null) {
+            historyBean.logActivity(
+                    ActivityType.PUBLICATION_UPDATED,
+                    "AI summary generated for publication: " + publication.getTitle(),
+                    "Publication",
+                    publicationId,
+                    submitter
+            );
+        }
+    }
 
-        } catch (Exception e) {
-            logger.severe("Erro ao gerar resumo assíncrono para publicação ID " + publicationId + ": " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * Placeholder while the job waits for the AI service to accept calls again; applySummary
+     * replaces it with the generated text.
+     */
+    public void applySummaryDeferred(Long publicationId) {
+        Publication publication = find(publicationId);
+        if (publication != null) {
+            publication.setDescription("Serviço de IA temporariamente indisponível - o resumo será gerado automaticamente assim que possível");
+        }
+    }
 
-            try {
-                Publication publication = find(publicationId);
-                if (publication != null) {
-                    publication.setDescription("Erro ao gerar resumo automático. Por favor, adicione uma descrição manualmente.");
-                    em.merge(publication);
-                }
-            } catch (Exception ex) {
-                logger.severe("Erro ao atualizar publicação com mensagem de erro: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+    public void applySummaryFailure(Long publicationId) {
+        Publication publication = find(publicationId);
+        if (publication != null) {
+            publication.setDescription("Erro ao gerar resumo automático. Por favor, adicione uma descrição manualmente.");
+            searchIndexBean.index(publication);
         }
     }
 }
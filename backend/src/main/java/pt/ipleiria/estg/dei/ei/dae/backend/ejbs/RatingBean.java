@@ -35,6 +35,7 @@ public class RatingBean {
 
 
         if (existing != null) {
+            updateCounters(publication, value - existing.getValue(), 0);
             existing.setValue(value);
 
             historyBean.logActivity(
@@ -51,6 +52,7 @@ public class RatingBean {
             em.persist(rating);
 
             publication.addRating(rating);
+            updateCounters(publication, value, 1);
 
             historyBean.logActivity(
                     ActivityType.RATING_CREATED,
@@ -95,9 +97,20 @@ public class RatingBean {
                 performedBy
         );
 
+        updateCounters(rating.getPublication(), -rating.getValue(), -1);
         em.remove(rating);
     }
 
+    // The bulk update bypasses the persistence context, so the managed publication gets the same delta
+    private void updateCounters(Publication publication, long sumDelta, int countDelta) {
+        em.createNamedQuery("updatePublicationRatingCounters")
+                .setParameter("sumDelta", sumDelta)
+                .setParameter("countDelta", countDelta)
+                .setParameter("publicationId", publication.getId())
+                .executeUpdate();
+        publication.applyRatingDelta(sumDelta, countDelta);
+    }
+
 
     public boolean canDelete(Rating rating, User user) {
         return rating.getUser().getUsername().equals(user.getUsername());
@@ -0,0 +1,202 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Publication;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Tag;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.InvertedIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Full-text indexes over publication metadata (title, description, authors and tag names)
+ * and over the text extracted from the publication documents.
+ * Built from the database on first use and then kept up to date by PublicationBean. Changes
+ * made inside a transaction are applied only once it commits, so a rollback leaves the index
+ * as it was.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SearchIndexBean {
+
+    private static final Logger logger = Logger.getLogger(SearchIndexBean.class.getName());
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int TAG_WEIGHT = 2;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @EJB
+    private DocumentTextBean documentTextBean;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactions;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final InvertedIndex contentIndex = new InvertedIndex();
+    private final Set<Long> hidden = ConcurrentHashMap.newKeySet();
+    private volatile boolean built = false;
+
+    public List<InvertedIndex.Hit> search(String query) {
+        ensureBuilt();
+        return index.search(query, id -> !hidden.contains(id));
+    }
+
+    public List<InvertedIndex.Hit> searchContent(String query) {
+        ensureBuilt();
+        return contentIndex.search(query, id -> !hidden.contains(id));
+    }
+
+    public void index(Publication publication) {
+        long id = publication.getId();
+        Map<String, Integer> terms = terms(publication);
+        boolean visible = publication.isVisible();
+        afterCommit(() -> put(id, terms, visible));
+    }
+
+    public void indexContent(long publicationId, String text) {
+        Map<String, Integer> terms = contentTerms(text);
+        afterCommit(() -> contentIndex.put(publicationId, terms));
+    }
+
+    public void removeContent(long publicationId) {
+        afterCommit(() -> contentIndex.remove(publicationId));
+    }
+
+    public void remove(long publicationId) {
+        afterCommit(() -> {
+            index.remove(publicationId);
+            contentIndex.remove(publicationId);
+            hidden.remove(publicationId);
+        });
+    }
+
+    /**
+     * Searches and changes wait on the same lock while this runs; built is only set once the
+     * snapshot is fully loaded.
+     */
+    public synchronized void rebuild() {
+        built = false;
+        index.clear();
+        contentIndex.clear();
+        hidden.clear();
+
+        List<Publication> publications = em.createQuery(
+                "SELECT DISTINCT p FROM Publication p LEFT JOIN FETCH p.tags LEFT JOIN FETCH p.document", Publication.class
+        ).getResultList();
+        for (Publication publication : publications) {
+            put(publication.getId(), terms(publication), publication.isVisible());
+            if (publication.getDocument() != null) {
+                String text = documentTextBean.load(publication.getDocument().getSha256());
+                if (text != null) {
+                    contentIndex.put(publication.getId(), contentTerms(text));
+                }
+            }
+        }
+        built = true;
+
+        logger.info("Search index built with " + index.size() + " publications ("
+                + contentIndex.size() + " with document text)");
+    }
+
+    private static Map<String, Integer> terms(Publication publication) {
+        Map<String, Integer> terms = new HashMap<>();
+        InvertedIndex.addTerms(terms, publication.getTitle(), TITLE_WEIGHT);
+        InvertedIndex.addTerms(terms, publication.getDescription(), DESCRIPTION_WEIGHT);
+        if (publication.getAuthors() != null) {
+            for (String author : publication.getAuthors()) {
+                InvertedIndex.addTerms(terms, author, AUTHOR_WEIGHT);
+            }
+        }
+        for (Tag tag : publication.getTags()) {
+            InvertedIndex.addTerms(terms, tag.getName(), TAG_WEIGHT);
+        }
+        return terms;
+    }
+
+    private static Map<String, Integer> contentTerms(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        InvertedIndex.addTerms(terms, text, 1);
+        return terms;
+    }
+
+    private void put(long id, Map<String, Integer> terms, boolean visible) {
+        index.put(id, terms);
+        if (visible) {
+            hidden.remove(id);
+        } else {
+            hidden.add(id);
+        }
+    }
+
+    // The terms are computed by the caller while its entities are managed; only the update of the shared maps is deferred
+    @SuppressWarnings("unchecked")
+    private void afterCommit(Runnable change) {
+        if (transactions.getTransactionKey() == null) {
+            apply(change);
+            return;
+        }
+
+        List<Runnable> changes = (List<Runnable>) transactions.getResource(SearchIndexBean.class);
+        if (changes == null) {
+            List<Runnable> created = new ArrayList<>();
+            transactions.putResource(SearchIndexBean.class, created);
+            transactions.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        created.forEach(SearchIndexBean.this::apply);
+                    }
+                }
+            });
+            changes = created;
+        }
+        changes.add(change);
+    }
+
+    /**
+     * Until the first build there is nothing to update: the build reads the committed state.
+     * During a build the change waits for it to finish and is then applied on top.
+     */
+    private void apply(Runnable change) {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    return;
+                }
+            }
+        }
+        change.run();
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    rebuild();
+                }
+            }
+        }
+    }
+}
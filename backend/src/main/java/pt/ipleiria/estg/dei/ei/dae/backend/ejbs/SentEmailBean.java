@@ -0,0 +1,55 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SentEmail;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.TimeCursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Stateless
+public class SentEmailBean {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public void record(String recipient, String subject, String body, LocalDateTime sentAt) {
+        em.persist(new SentEmail(recipient, subject, body, sentAt));
+    }
+
+    /**
+     * Newest first, keyset-paginated on (sentAt, id) through the recipient index.
+     */
+    public PageDTO<SentEmail> getPage(String recipient, TimeCursor after, int limit) {
+        TypedQuery<SentEmail> query;
+        if (after == null) {
+            query = em.createNamedQuery("getSentEmailsByRecipient", SentEmail.class);
+        } else {
+            query = em.createNamedQuery("getSentEmailsByRecipientAfter", SentEmail.class)
+                    .setParameter("sentAt", after.getTimestamp())
+                    .setParameter("id", after.getId());
+        }
+        List<SentEmail> emails = query
+                .setParameter("recipient", recipient)
+                .setMaxResults(limit + 1)
+                .getResultList();
+
+        String next = null;
+        if (emails.size() > limit) {
+            emails = emails.subList(0, limit);
+            SentEmail last = emails.get(limit - 1);
+            next = new TimeCursor(last.getSentAt(), last.getId()).encode();
+        }
+        return new PageDTO<>(emails, next);
+    }
+
+    public int deleteOlderThan(LocalDateTime before) {
+        return em.createNamedQuery("deleteSentEmailsBefore")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,66 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryCacheEntry;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Settings;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Persistent summary cache bounded to "centroXYZ.summary.cacheSize" entries; the least
+ * recently used entries are evicted first.
+ */
+@Stateless
+public class SummaryCacheBean {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private int maxEntries;
+
+    @PostConstruct
+    public void init() {
+        maxEntries = Math.max(1, Settings.getInt("centroXYZ.summary.cacheSize", 10000));
+    }
+
+    public String get(String hash) {
+        SummaryCacheEntry entry = em.find(SummaryCacheEntry.class, hash);
+        if (entry == null) {
+            return null;
+        }
+        em.createNamedQuery("touchSummaryCacheEntry")
+                .setParameter("now", LocalDateTime.now())
+                .setParameter("hash", hash)
+                .executeUpdate();
+        return entry.getSummary();
+    }
+
+    public void put(String hash, String model, String summary) {
+        SummaryCacheEntry entry = em.find(SummaryCacheEntry.class, hash);
+        if (entry != null) {
+            entry.setSummary(summary);
+            entry.setLastUsedAt(LocalDateTime.now());
+            return;
+        }
+        em.persist(new SummaryCacheEntry(hash, model, summary));
+        em.flush();
+        evict();
+    }
+
+    private void evict() {
+        long excess = em.createNamedQuery("countSummaryCacheEntries", Long.class).getSingleResult() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        List<String> oldest = em.createNamedQuery("getLeastRecentlyUsedSummaries", String.class)
+                .setMaxResults((int) Math.min(excess, 1000))
+                .getResultList();
+        em.createNamedQuery("deleteSummaryCacheEntries")
+                .setParameter("hashes", oldest)
+                .executeUpdate();
+    }
+}
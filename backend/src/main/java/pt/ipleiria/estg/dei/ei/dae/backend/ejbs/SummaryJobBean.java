@@ -0,0 +1,165 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Document;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryJob;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryJobStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Stateless
+public class SummaryJobBean {
+
+    // Hibernate's LockOptions.SKIP_LOCKED: rows claimed by another worker are skipped instead of waited for
+    private static final int SKIP_LOCKED = -2;
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public SummaryJob enqueue(Long publicationId, boolean generateSummary, String submitterUsername) {
+        SummaryJob job = new SummaryJob(publicationId, generateSummary, submitterUsername);
+        em.persist(job);
+        return job;
+    }
+
+    public SummaryJob find(Long id) {
+        return em.find(SummaryJob.class, id);
+    }
+
+    public SummaryJob findLatest(Long publicationId) {
+        List<SummaryJob> jobs = em.createNamedQuery("getSummaryJobsByPublication", SummaryJob.class)
+                .setParameter("publicationId", publicationId)
+                .setMaxResults(1)
+                .getResultList();
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    /**
+     * Takes the next due job off the queue and marks it EXTRACTING. Returns null when there is none.
+     */
+    public Long claimNext() {
+        List<SummaryJob> jobs = em.createNamedQuery("getRunnableSummaryJobs", SummaryJob.class)
+                .setParameter("status", SummaryJobStatus.QUEUED)
+                .setParameter("now", LocalDateTime.now())
+                .setMaxResults(1)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.lock.timeout", SKIP_LOCKED)
+                .getResultList();
+        if (jobs.isEmpty()) {
+            return null;
+        }
+
+        SummaryJob job = jobs.get(0);
+        job.setAttempts(job.getAttempts() + 1);
+        job.setProgress(0, 0);
+        job.setPartialSummary(null);
+        job.setStatus(SummaryJobStatus.EXTRACTING);
+        return job.getId();
+    }
+
+    public Document findDocument(Long publicationId) {
+        List<Document> documents = em.createQuery(
+                        "SELECT d FROM Document d WHERE d.publication.id = :publicationId", Document.class)
+                .setParameter("publicationId", publicationId)
+                .getResultList();
+        return documents.isEmpty() ? null : documents.get(0);
+    }
+
+    public void updateStatus(Long id, SummaryJobStatus status) {
+        SummaryJob job = em.find(SummaryJob.class, id);
+        if (job != null) {
+            job.setStatus(status);
+        }
+    }
+
+    public void updateProgress(Long id, int done, int total) {
+        SummaryJob job = em.find(SummaryJob.class, id);
+        if (job != null) {
+            job.setProgress(done, total);
+        }
+    }
+
+    /**
+     * Written to the job row rather than the publication, so the periodic flush never
+     * conflicts with edits to the publication.
+     */
+    public void updatePartialSummary(Long id, String partialSummary) {
+        SummaryJob job = em.find(SummaryJob.class, id);
+        if (job != null) {
+            job.setPartialSummary(partialSummary);
+        }
+    }
+
+    public void complete(Long id) {
+        SummaryJob job = em.find(SummaryJob.class, id);
+        if (job != null) {
+            job.setStatus(SummaryJobStatus.DONE);
+            job.setLastError(null);
+            job.setPartialSummary(null);
+        }
+    }
+
+    /**
+     * Puts a failed job back on the queue with exponential backoff, or marks it FAILED once
+     * maxAttempts is reached. Returns whether it will be retried.
+     */
+    public boolean fail(Long id, String error, int maxAttempts, Duration backoff) {
+        SummaryJob job = em.find(SummaryJob.class, id);
+        if (job == null) {
+            return false;
+        }
+        job.setLastError(error);
+        job.setPartialSummary(null);
+
+        if (job.getAttempts() >= maxAttempts) {
+            job.setStatus(SummaryJobStatus.FAILED);
+            return false;
+        }
+
+        Duration delay = backoff.multipliedBy(1L << Math.min(job.getAttempts() - 1, 16));
+        if (delay.compareTo(MAX_BACKOFF) > 0) {
+            delay = MAX_BACKOFF;
+        }
+        job.setNextAttemptAt(LocalDateTime.now().plus(delay));
+        job.setStatus(SummaryJobStatus.QUEUED);
+        return true;
+    }
+
+    /**
+     * Puts the job back on the queue after delay without counting the attempt, for work that
+     * could not start (AI service unavailable) rather than work that failed.
+     */
+    public void defer(Long id, String reason, Duration delay) {
+        SummaryJob job = em.find(SummaryJob.class, id);
+        if (job == null) {
+            return;
+        }
+        job.setLastError(reason);
+        job.setAttempts(Math.max(0, job.getAttempts() - 1));
+        job.setNextAttemptAt(LocalDateTime.now().plus(delay));
+        job.setStatus(SummaryJobStatus.QUEUED);
+    }
+
+    /**
+     * Jobs left EXTRACTING or SUMMARIZING were interrupted by a shutdown; they go back to the queue.
+     */
+    public int requeueInterrupted() {
+        return em.createNamedQuery("requeueInterruptedSummaryJobs")
+                .setParameter("queued", SummaryJobStatus.QUEUED)
+                .setParameter("running", List.of(SummaryJobStatus.EXTRACTING, SummaryJobStatus.SUMMARIZING))
+                .executeUpdate();
+    }
+
+    public void deleteByPublication(Long publicationId) {
+        em.createNamedQuery("deleteSummaryJobsByPublication")
+                .setParameter("publicationId", publicationId)
+                .executeUpdate();
+    }
+}
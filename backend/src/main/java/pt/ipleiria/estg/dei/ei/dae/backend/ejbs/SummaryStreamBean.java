@@ -0,0 +1,106 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseBroadcaster;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Pushes the summary of a publication to the clients listening on GET /posts/{id}/summary/stream
+ * while SummaryWorkerBean generates it. Events: "progress" (AI calls done/total), "partial"
+ * (summary so far), "retry" (attempt failed, will be retried) and "done" or "failed", after
+ * which the stream is closed.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SummaryStreamBean {
+
+    private static final Logger logger = Logger.getLogger(SummaryStreamBean.class.getName());
+
+    private final Map<Long, SseBroadcaster> broadcasters = new ConcurrentHashMap<>();
+    private final Map<Long, String> partials = new ConcurrentHashMap<>();
+
+    private volatile Sse sse;
+
+    /**
+     * The latest partial summary is sent straight away, so a client that connects mid-way
+     * does not wait for the next token.
+     */
+    public void subscribe(Long publicationId, SseEventSink sink, Sse sse) {
+        this.sse = sse;
+        SseBroadcaster broadcaster = broadcasters.computeIfAbsent(publicationId, id -> {
+            SseBroadcaster created = sse.newBroadcaster();
+            created.onError((failedSink, error) -> logger.fine("SSE client dropped: " + error.getMessage()));
+            return created;
+        });
+        broadcaster.register(sink);
+
+        String partial = partials.get(publicationId);
+        if (partial != null) {
+            sink.send(event("partial", Map.of("summary", partial)));
+        }
+    }
+
+    /**
+     * Sends the final event to a single client and closes its stream, for a client that
+     * connects after the summary is finished.
+     */
+    public void sendFinished(SseEventSink sink, Sse sse, String summary, boolean failed) {
+        this.sse = sse;
+        sink.send(finishedEvent(summary, failed)).whenComplete((result, error) -> sink.close());
+    }
+
+    public void progress(Long publicationId, int done, int total) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("done", done);
+        data.put("total", total);
+        broadcast(publicationId, "progress", data);
+    }
+
+    public void partial(Long publicationId, String summary) {
+        partials.put(publicationId, summary);
+        broadcast(publicationId, "partial", Map.of("summary", summary));
+    }
+
+    public void retry(Long publicationId, String error) {
+        partials.remove(publicationId);
+        broadcast(publicationId, "retry", Map.of("message", error == null ? "" : error));
+    }
+
+    public void finish(Long publicationId, String summary, boolean failed) {
+        partials.remove(publicationId);
+        SseBroadcaster broadcaster = broadcasters.remove(publicationId);
+        if (broadcaster == null) {
+            return;
+        }
+        broadcaster.broadcast(finishedEvent(summary, failed)).whenComplete((result, error) -> broadcaster.close());
+    }
+
+    private void broadcast(Long publicationId, String name, Map<String, ?> data) {
+        SseBroadcaster broadcaster = broadcasters.get(publicationId);
+        if (broadcaster != null) {
+            broadcaster.broadcast(event(name, data));
+        }
+    }
+
+    private OutboundSseEvent finishedEvent(String summary, boolean failed) {
+        return event(failed ? "failed" : "done", Map.of("summary", summary == null ? "" : summary));
+    }
+
+    private OutboundSseEvent event(String name, Map<String, ?> data) {
+        return sse.newEventBuilder()
+                .name(name)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(Map.class, data)
+                .build();
+    }
+}
@@ -0,0 +1,270 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.concurrent.ManagedThreadFactory;
+import jakarta.inject.Inject;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Document;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.FileType;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Publication;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryJob;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SummaryJobStatus;
+import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.AIUnavailableException;
+import pt.ipleiria.estg.dei.ei.dae.backend.services.AIService;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.PdfTextExtractor;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Settings;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.ZipTextExtractor;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs the queued SummaryJobs with at most "centroXYZ.summary.workers" at a time. Each step
+ * (claim, extraction, summary, result) commits on its own, so no transaction is held open
+ * during the PDF parsing or the call to the AI service. While the summary is streamed, the
+ * text so far is pushed to SummaryStreamBean and written to the job (partialSummary) every
+ * "centroXYZ.summary.flushMillis". The PDFs inside a ZIP are parsed on a pool of their own, never
+ * on the executor running the workers, which would then wait on tasks queued behind themselves.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class SummaryWorkerBean {
+
+    private static final Logger logger = Logger.getLogger(SummaryWorkerBean.class.getName());
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(1);
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @EJB
+    private SummaryJobBean summaryJobBean;
+
+    @EJB
+    private PublicationBean publicationBean;
+
+    @EJB
+    private DocumentTextBean documentTextBean;
+
+    @EJB
+    private SearchIndexBean searchIndexBean;
+
+    @EJB
+    private SummaryStreamBean summaryStreamBean;
+
+    @Inject
+    private AIService aiService;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private int workers;
+    private int maxAttempts;
+    private Duration backoff;
+    private Duration flushInterval;
+    private int zipParallelism;
+    private long zipMaxChars;
+    private long zipMemoryBudget;
+    private Duration zipTimeout;
+    private ExecutorService zipExecutor;
+    private int pdfMaxPages;
+    private long pdfMaxChars;
+
+    @PostConstruct
+    public void init() {
+        workers = Math.max(1, Settings.getInt("centroXYZ.summary.workers", 2));
+        maxAttempts = Math.max(1, Settings.getInt("centroXYZ.summary.maxAttempts", 4));
+        backoff = Duration.ofSeconds(Math.max(1, Settings.getLong("centroXYZ.summary.backoffSeconds", 30)));
+        flushInterval = Duration.ofMillis(Math.max(100, Settings.getLong("centroXYZ.summary.flushMillis", 2000)));
+        zipParallelism = Math.max(1, Settings.getInt("centroXYZ.zip.parallelism", 4));
+        zipMaxChars = Math.max(1, Settings.getLong("centroXYZ.zip.maxChars", 1_000_000));
+        zipMemoryBudget = Math.max(1, Settings.getLong("centroXYZ.zip.memoryBudgetMB", 256)) * 1024 * 1024;
+        zipTimeout = Duration.ofSeconds(Math.max(1, Settings.getLong("centroXYZ.zip.timeoutSeconds", 600)));
+        pdfMaxPages = Math.max(1, Settings.getInt("centroXYZ.pdf.maxPages", 300));
+        pdfMaxChars = Math.max(1, Settings.getLong("centroXYZ.pdf.maxChars", 1_000_000));
+
+        // No queue: when every thread is busy the entry is parsed on the worker's own thread
+        zipExecutor = new ThreadPoolExecutor(0, workers * zipParallelism, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        int requeued = summaryJobBean.requeueInterrupted();
+        if (requeued > 0) {
+            logger.info("Requeued " + requeued + " summary jobs interrupted by the last shutdown");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        zipExecutor.shutdownNow();
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/5", persistent = false)
+    public synchronized void dispatch() {
+        while (running.get() < workers) {
+            Long jobId = summaryJobBean.claimNext();
+            if (jobId == null) {
+                return;
+            }
+
+            running.incrementAndGet();
+            try {
+                executor.submit(() -> {
+                    try {
+                        process(jobId);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                summaryJobBean.fail(jobId, "Executor indisponível: " + e.getMessage(), maxAttempts, backoff);
+                return;
+            }
+        }
+    }
+
+    private void process(Long jobId) {
+        SummaryJob job = summaryJobBean.find(jobId);
+        if (job == null) {
+            return;
+        }
+        Long publicationId = job.getPublicationId();
+
+        try {
+            Document document = summaryJobBean.findDocument(publicationId);
+            if (document == null) {
+                // Publication deleted while the job was queued
+                summaryJobBean.complete(jobId);
+                return;
+            }
+
+            String text = extractText(jobId, publicationId, document);
+
+            if (!job.isGenerateSummary()) {
+                summaryJobBean.complete(jobId);
+                return;
+            }
+
+            summaryJobBean.updateStatus(jobId, SummaryJobStatus.SUMMARIZING);
+            String summary = null;
+            if (text != null && !text.trim().isEmpty()) {
+                long[] lastFlush = {System.nanoTime()};
+                summary = aiService.generateSummary(
+                        text,
+                        (done, total) -> {
+                            summaryJobBean.updateProgress(jobId, done, total);
+                            summaryStreamBean.progress(publicationId, done, total);
+                        },
+                        partial -> {
+                            summaryStreamBean.partial(publicationId, partial);
+                            if (System.nanoTime() - lastFlush[0] >= flushInterval.toNanos()) {
+                                lastFlush[0] = System.nanoTime();
+                                summaryJobBean.updatePartialSummary(jobId, partial);
+                            }
+                        });
+            }
+
+            publicationBean.applySummary(publicationId, summary, job.getSubmitterUsername());
+            summaryJobBean.complete(jobId);
+            Publication publication = publicationBean.find(publicationId);
+            summaryStreamBean.finish(publicationId, publication == null ? null : publication.getDescription(), false);
+
+        } catch (AIUnavailableException e) {
+            // Rejected before calling the AI service: back on the queue without using up an attempt
+            logger.warning("Resumo da publicação ID " + publicationId + " adiado: " + e.getMessage());
+            summaryJobBean.defer(jobId, e.getMessage(), e.getRetryAfter());
+            publicationBean.applySummaryDeferred(publicationId);
+            summaryStreamBean.retry(publicationId, e.getMessage());
+
+        } catch (Exception e) {
+            logger.severe("Erro ao processar resumo da publicação ID " + publicationId
+                    + " (tentativa " + job.getAttempts() + "): " + e.getMessage());
+
+            boolean retrying = summaryJobBean.fail(jobId, String.valueOf(e.getMessage()), maxAttempts, backoff);
+            if (retrying) {
+                summaryStreamBean.retry(publicationId, e.getMessage());
+            } else if (job.isGenerateSummary()) {
+                publicationBean.applySummaryFailure(publicationId);
+                Publication publication = publicationBean.find(publicationId);
+                summaryStreamBean.finish(publicationId, publication == null ? null : publication.getDescription(), true);
+            }
+        }
+    }
+
+    /**
+     * Identical files are extracted only once, whoever uploaded them. PDFs are read page by page
+     * up to "centroXYZ.pdf.maxPages" / "centroXYZ.pdf.maxChars" (ZIPs up to "centroXYZ.zip.maxChars"),
+     * reporting the pages read as the job's progress. Only a complete extraction goes to the
+     * text store and the content index, which must never hold a cut version of a document: text
+     * cut at the limits is used for the summary only, and that document is left out of content
+     * search until the limits are raised.
+     */
+    private String extractText(Long jobId, Long publicationId, Document document) throws IOException {
+        String text = documentTextBean.load(document.getSha256());
+        if (text != null) {
+            searchIndexBean.indexContent(publicationId, text);
+            return text;
+        }
+
+        boolean complete = true;
+        if (document.getFileType() == FileType.PDF) {
+            long[] lastReport = {0};
+            int[] pagesRead = {0, 0};
+            text = PdfTextExtractor.extractText(new File(document.getFilePath()), pdfMaxPages, pdfMaxChars,
+                    (page, pages, pageText) -> {
+                        pagesRead[0] = page;
+                        pagesRead[1] = pages;
+                        if (System.nanoTime() - lastReport[0] >= PROGRESS_INTERVAL.toNanos() || page == pages) {
+                            lastReport[0] = System.nanoTime();
+                            summaryJobBean.updateProgress(jobId, page, Math.min(pages, pdfMaxPages));
+                        }
+                    });
+            complete = pagesRead[0] == pagesRead[1] && text.length() < pdfMaxChars;
+        } else if (document.getFileType() == FileType.ZIP) {
+            text = ZipTextExtractor.extractTextFromPDFs(new File(document.getFilePath()),
+                    zipExecutor, zipParallelism, zipMaxChars, zipMemoryBudget, zipTimeout);
+            complete = text.length() < zipMaxChars;
+        }
+
+        if (text == null || text.trim().isEmpty()) {
+            return text;
+        }
+        if (!complete) {
+            logger.info("Texto do documento " + document.getId() + " cortado nos limites de extração: "
+                    + "usado só para o resumo, não guardado nem indexado para pesquisa");
+            return text;
+        }
+
+        if (document.getSha256() != null) {
+            try {
+                documentTextBean.store(document.getSha256(), text);
+            } catch (IOException e) {
+                logger.warning("Erro ao guardar texto extraído do documento " + document.getId() + ": " + e.getMessage());
+            }
+        }
+        searchIndexBean.indexContent(publicationId, text);
+        return text;
+    }
+}
@@ -23,6 +23,9 @@ public class TagBean {
     @EJB
     private UserBean userbean;
 
+    @EJB
+    private SearchIndexBean searchIndexBean;
+
 
     public Tag create(String name, User performedBy) {
         Tag tag = new Tag(name);
@@ -52,6 +55,7 @@ public class TagBean {
         em.lock(tag, LockModeType.OPTIMISTIC);
 
         tag.setName(newName);
+        tag.getPublications().forEach(searchIndexBean::index);
 
         User performedBy = userbean.find(username);
         if(performedBy == null) {
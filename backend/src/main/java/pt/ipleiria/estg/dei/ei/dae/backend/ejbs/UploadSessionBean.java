@@ -0,0 +1,216 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.*;
+import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityNotFoundException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+@Stateless
+public class UploadSessionBean {
+    private static final Path SESSION_DIR = Paths.get("/tmp/uploads/sessions");
+
+    public static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final long MAX_UPLOAD_SIZE = 2L * 1024 * 1024 * 1024;
+
+    // Extended on every chunk, so only abandoned uploads expire
+    private static final Duration SESSION_TTL = Duration.ofHours(24);
+
+    private static final Logger logger = Logger.getLogger(UploadSessionBean.class.getName());
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @EJB
+    private DocumentBean documentBean;
+
+    @EJB
+    private PublicationBean publicationBean;
+
+    public UploadSession create(User owner, String fileName, long size, String sha256)
+            throws MyEntityNotFoundException {
+        if (owner == null) {
+            throw new MyEntityNotFoundException("User not found");
+        }
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("O nome do ficheiro é obrigatório");
+        }
+        if (size <= 0 || size > MAX_UPLOAD_SIZE) {
+            throw new IllegalArgumentException("O tamanho do ficheiro deve estar entre 1 e " + MAX_UPLOAD_SIZE + " bytes");
+        }
+        if (sha256 != null && !DocumentBean.isHash(sha256.toLowerCase())) {
+            throw new IllegalArgumentException("Hash SHA-256 inválido");
+        }
+
+        FileType fileType = fileName.toLowerCase().endsWith(".pdf") ? FileType.PDF : FileType.ZIP;
+
+        UploadSession session = new UploadSession(
+                UUID.randomUUID().toString(),
+                owner,
+                fileName,
+                fileType,
+                size,
+                CHUNK_SIZE,
+                sha256 != null ? sha256.toLowerCase() : null,
+                LocalDateTime.now().plus(SESSION_TTL)
+        );
+        em.persist(session);
+        return session;
+    }
+
+    public UploadSession find(String id, String username) throws MyEntityNotFoundException {
+        UploadSession session = em.find(UploadSession.class, id);
+        if (session == null || !session.getOwner().getUsername().equals(username)) {
+            throw new MyEntityNotFoundException("Upload session not found: " + id);
+        }
+        Hibernate.initialize(session.getReceivedChunks());
+        return session;
+    }
+
+    public boolean isAlreadyStored(UploadSession session) {
+        return session.getSha256() != null && documentBean.exists(session.getSha256());
+    }
+
+    /**
+     * Writes one chunk in place at its offset of the staging file while hashing it. The chunk
+     * only counts as received when both its length and its SHA-256 match; a bad chunk is simply
+     * overwritten by the retry.
+     */
+    public UploadSession writeChunk(String id, String username, int index, String checksum, InputStream data)
+            throws MyEntityNotFoundException, IOException {
+        UploadSession session = find(id, username);
+
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Índice de parte inválido: " + index);
+        }
+        if (checksum == null || !DocumentBean.isHash(checksum.toLowerCase())) {
+            throw new IllegalArgumentException("Cabeçalho X-Chunk-SHA256 em falta ou inválido");
+        }
+
+        long expected = session.getChunkLength(index);
+        MessageDigest digest = DocumentBean.newDigest();
+        long written = 0;
+
+        Files.createDirectories(SESSION_DIR);
+        try (FileChannel channel = FileChannel.open(stagingFile(session), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             DigestInputStream in = new DigestInputStream(data, digest)) {
+            byte[] buffer = new byte[64 * 1024];
+            long position = session.getChunkOffset(index);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (written + read > expected) {
+                    throw new IllegalArgumentException("A parte " + index + " excede o tamanho esperado de " + expected + " bytes");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+                written += read;
+            }
+        }
+
+        if (written != expected) {
+            throw new IllegalArgumentException("A parte " + index + " tem " + written + " bytes, esperados " + expected);
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equals(checksum.toLowerCase())) {
+            throw new IllegalArgumentException("Checksum da parte " + index + " não corresponde");
+        }
+
+        session.getReceivedChunks().add(index);
+        session.setExpiresAt(LocalDateTime.now().plus(SESSION_TTL));
+        return session;
+    }
+
+    /**
+     * Moves the assembled file into the document store and creates the publication. When the
+     * announced hash is already stored no chunks are needed at all.
+     */
+    public Publication commit(String id, String username, String title, String description,
+                              ScientificArea scientificArea, LocalDate publicationDate,
+                              List<String> authors, List<Long> tagIds)
+            throws MyEntityNotFoundException, IOException {
+        UploadSession session = find(id, username);
+        Document document = null;
+
+        if (!session.isComplete() && session.getSha256() != null) {
+            document = documentBean.createFromExisting(session.getFileName(), session.getFileType(), session.getSha256());
+        }
+
+        if (document == null) {
+            if (!session.isComplete()) {
+                throw new IllegalStateException("Faltam " + (session.getChunkCount() - session.getReceivedChunks().size())
+                        + " de " + session.getChunkCount() + " partes");
+            }
+
+            Path staged = stagingFile(session);
+            String sha256 = hash(staged);
+            if (session.getSha256() != null && !session.getSha256().equals(sha256)) {
+                throw new IllegalArgumentException("O ficheiro recebido não corresponde ao hash SHA-256 anunciado");
+            }
+            document = documentBean.create(session.getFileName(), session.getFileType(), staged, sha256, session.getTotalSize());
+        }
+
+        Publication publication = publicationBean.create(
+                title, description, scientificArea, publicationDate, authors, session.getOwner(), document, tagIds);
+
+        em.remove(session);
+        return publication;
+    }
+
+    public void abort(String id, String username) throws MyEntityNotFoundException {
+        UploadSession session = find(id, username);
+        deleteStagingFile(session);
+        em.remove(session);
+    }
+
+    public int removeExpired() {
+        List<UploadSession> expired = em.createNamedQuery("getExpiredUploadSessions", UploadSession.class)
+                .setParameter("now", LocalDateTime.now())
+                .getResultList();
+        for (UploadSession session : expired) {
+            deleteStagingFile(session);
+            em.remove(session);
+        }
+        return expired.size();
+    }
+
+    private void deleteStagingFile(UploadSession session) {
+        try {
+            Files.deleteIfExists(stagingFile(session));
+        } catch (IOException e) {
+            logger.warning("Error deleting upload session file " + session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private static Path stagingFile(UploadSession session) {
+        return SESSION_DIR.resolve(session.getId() + ".part");
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = DocumentBean.newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(java.io.OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
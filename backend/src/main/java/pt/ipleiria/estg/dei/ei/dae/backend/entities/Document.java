@@ -22,6 +22,12 @@ public class Document {
     @Enumerated(EnumType.STRING)
     private FileType fileType;
 
+    // SHA-256 of the stored file, hex encoded, computed while the upload is written to disk
+    @Column(length = 64)
+    private String sha256;
+
+    private long fileSize;
+
     @OneToOne
     @JoinColumn(name = "publication_id", nullable = false,unique = true)
     private Publication publication;
@@ -67,6 +73,22 @@ public class Document {
         this.fileType = fileType;
     }
 
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
     public Publication getPublication() {
         return publication;
     }
@@ -0,0 +1,72 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored file in the content-addressed document store, identified by its SHA-256.
+ * refCount is the number of Documents pointing at it; once it drops to zero the blob
+ * is left for the garbage collector (see DocumentBean.collectGarbage).
+ */
+@Entity
+@Table(name = "document_blobs")
+@NamedQueries({
+        @NamedQuery(
+                name = "getOrphanBlobs",
+                query = "SELECT b FROM DocumentBlob b WHERE b.refCount = 0 AND b.orphanedAt < :before"
+        ),
+        @NamedQuery(
+                name = "getKnownBlobHashes",
+                query = "SELECT b.hash FROM DocumentBlob b WHERE b.hash IN :hashes"
+        )
+})
+public class DocumentBlob {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    private long size;
+
+    private int refCount;
+
+    private LocalDateTime orphanedAt;
+
+    public DocumentBlob() {
+    }
+
+    public DocumentBlob(String hash, long size) {
+        this.hash = hash;
+        this.size = size;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void acquire() {
+        refCount++;
+        orphanedAt = null;
+    }
+
+    public void release() {
+        if (refCount > 0) {
+            refCount--;
+        }
+        if (refCount == 0) {
+            orphanedAt = LocalDateTime.now();
+        }
+    }
+
+    public LocalDateTime getOrphanedAt() {
+        return orphanedAt;
+    }
+}
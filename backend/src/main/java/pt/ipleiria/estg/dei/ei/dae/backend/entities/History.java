@@ -9,12 +9,17 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "history_logs")
+@Table(
+        name = "history_logs",
+        // Keyset order (timestamp, id) for no filter and for each single user, action or entity filter of HistoryBean.getPage
+        indexes = {
+                @Index(name = "idx_history_logs_timestamp", columnList = "timestamp, id"),
+                @Index(name = "idx_history_logs_user", columnList = "user_username, timestamp, id"),
+                @Index(name = "idx_history_logs_action", columnList = "action, timestamp, id"),
+                @Index(name = "idx_history_logs_entity", columnList = "entity, entity_id, timestamp, id")
+        }
+)
 @NamedQueries({
-    @NamedQuery(
-        name = "getAllHistoryLogs",
-        query = "SELECT h FROM History h ORDER BY h.timestamp DESC"
-    ),
     @NamedQuery(
         name = "getHistoryLogsByUser",
         query = "SELECT h FROM History h WHERE h.user.username = :username ORDER BY h.timestamp DESC"
@@ -0,0 +1,86 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Something tag subscribers should hear about, waiting to go out in the next digest
+ * (see NotificationBean.sendDigests). With a tagId it is meant for that tag's subscribers;
+ * without one, for the subscribers of any tag of the publication.
+ */
+@Entity
+@Table(
+        name = "notification_events",
+        indexes = {
+                @Index(name = "idx_notification_events_created", columnList = "createdAt, id")
+        }
+)
+@NamedQueries({
+        @NamedQuery(
+                name = "getPendingNotificationEvents",
+                query = "SELECT e FROM NotificationEvent e WHERE e.createdAt <= :until ORDER BY e.createdAt, e.id"
+        ),
+        @NamedQuery(
+                name = "getOldestNotificationEvent",
+                query = "SELECT MIN(e.createdAt) FROM NotificationEvent e"
+        ),
+        @NamedQuery(
+                name = "getTagSubscriberEmails",
+                query = "SELECT t.id, u.email FROM Tag t JOIN t.subscribers u WHERE t.id IN :tagIds"
+        ),
+        @NamedQuery(
+                name = "getPublicationSubscriberEmails",
+                query = "SELECT DISTINCT p.id, u.email FROM Publication p JOIN p.tags t JOIN t.subscribers u WHERE p.id IN :publicationIds"
+        ),
+        @NamedQuery(
+                name = "deleteNotificationEvents",
+                query = "DELETE FROM NotificationEvent e WHERE e.id IN :ids"
+        )
+})
+public class NotificationEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long tagId;
+
+    @Column(nullable = false)
+    private Long publicationId;
+
+    @Column(nullable = false, length = 500)
+    private String message;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public NotificationEvent() {
+    }
+
+    public NotificationEvent(Long tagId, Long publicationId, String message) {
+        this.tagId = tagId;
+        this.publicationId = publicationId;
+        this.message = message != null && message.length() > 500 ? message.substring(0, 500) : message;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getTagId() {
+        return tagId;
+    }
+
+    public Long getPublicationId() {
+        return publicationId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
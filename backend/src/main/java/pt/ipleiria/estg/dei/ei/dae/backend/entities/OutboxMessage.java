@@ -0,0 +1,91 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Work with side effects outside the database (e.g. an email), written in the same transaction
+ * as the change that caused it and carried out by OutboxRelayBean only after that transaction
+ * commits. The payload is JSON whose shape depends on the type.
+ */
+@Entity
+@Table(
+        name = "outbox_messages",
+        indexes = {
+                @Index(name = "idx_outbox_messages_available", columnList = "availableAt, id")
+        }
+)
+@NamedQueries({
+        @NamedQuery(
+                name = "getDueOutboxMessages",
+                query = "SELECT m FROM OutboxMessage m WHERE m.availableAt <= :now ORDER BY m.availableAt, m.id"
+        ),
+        @NamedQuery(
+                name = "countOutboxMessages",
+                query = "SELECT COUNT(m) FROM OutboxMessage m"
+        )
+})
+public class OutboxMessage {
+    public static final String EMAIL = "EMAIL";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String type;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime availableAt;
+
+    public OutboxMessage() {
+    }
+
+    public OutboxMessage(String type, String payload) {
+        this.type = type;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+        this.availableAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getAvailableAt() {
+        return availableAt;
+    }
+
+    public void setAvailableAt(LocalDateTime availableAt) {
+        this.availableAt = availableAt;
+    }
+}
@@ -10,15 +10,37 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "publications")
+@Table(
+        name = "publications",
+        indexes = {
+                @Index(name = "idx_publications_date_id", columnList = "publicationDate, id"),
+                @Index(name = "idx_publications_comments_date_id", columnList = "commentCount, publicationDate, id")
+        }
+)
 @NamedQueries({
         @NamedQuery(
                 name = "getAllPublications",
-                query = "SELECT p FROM Publication p ORDER BY p.scientificArea DESC"
+                query = "SELECT p FROM Publication p JOIN FETCH p.author LEFT JOIN FETCH p.document ORDER BY p.scientificArea DESC"
         ),
         @NamedQuery(
                 name = "getVisiblePublications",
-                query = "SELECT p FROM Publication p WHERE p.visible = true ORDER BY p.publicationDate DESC"
+                query = "SELECT p FROM Publication p JOIN FETCH p.author LEFT JOIN FETCH p.document WHERE p.visible = true ORDER BY p.publicationDate DESC"
+        ),
+        @NamedQuery(
+                name = "updatePublicationRatingCounters",
+                query = "UPDATE Publication p SET p.ratingSum = p.ratingSum + :sumDelta, " +
+                        "p.ratingCount = p.ratingCount + :countDelta WHERE p.id = :publicationId"
+        ),
+        @NamedQuery(
+                name = "updatePublicationCommentCounter",
+                query = "UPDATE Publication p SET p.commentCount = p.commentCount + :delta WHERE p.id = :publicationId"
+        ),
+        @NamedQuery(
+                name = "recomputePublicationCounters",
+                query = "UPDATE Publication p SET " +
+                        "p.commentCount = (SELECT COUNT(c) FROM Comment c WHERE c.publication = p), " +
+                        "p.ratingCount = (SELECT COUNT(r) FROM Rating r WHERE r.publication = p), " +
+                        "p.ratingSum = (SELECT COALESCE(SUM(r.value), 0) FROM Rating r WHERE r.publication = p)"
         )
 })
 public class Publication extends Versionable implements Serializable {
@@ -71,6 +93,16 @@ public class Publication extends Versionable implements Serializable {
     @OneToMany(mappedBy = "publication", cascade = CascadeType.ALL)
     private List<Comment> comments;
 
+    // Maintained only through the counter update queries above, so dirty checking never overwrites them
+    @Column(nullable = false, updatable = false)
+    private long ratingSum;
+
+    @Column(nullable = false, updatable = false)
+    private int ratingCount;
+
+    @Column(nullable = false, updatable = false)
+    private int commentCount;
+
     public Publication() {
         this.tags = new ArrayList<>();
         this.ratings = new ArrayList<>();
@@ -220,16 +252,37 @@ public class Publication extends Versionable implements Serializable {
     }
 
     public Double getAverageRating() {
-        if (ratings.isEmpty()) {
+        if (ratingCount == 0) {
             return null;
         }
-        return ratings.stream()
-                .mapToInt(Rating::getValue)
-                .average()
-                .orElse(0.0);
+        return (double) ratingSum / ratingCount;
+    }
+
+    public long getRatingSum() {
+        return ratingSum;
     }
 
     public int getRatingCount() {
-        return ratings.size();
+        return ratingCount;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
+    /**
+     * Mirrors updatePublicationRatingCounters on this instance, which the bulk update does not
+     * touch. Never written back: the columns are not updatable.
+     */
+    public void applyRatingDelta(long sumDelta, int countDelta) {
+        ratingSum += sumDelta;
+        ratingCount += countDelta;
+    }
+
+    /**
+     * Mirrors updatePublicationCommentCounter on this instance.
+     */
+    public void applyCommentDelta(int delta) {
+        commentCount += delta;
     }
 }
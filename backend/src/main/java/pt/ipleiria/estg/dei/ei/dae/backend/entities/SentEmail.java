@@ -0,0 +1,81 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An email accepted by the SMTP server, kept for "centroXYZ.mail.retentionDays" so users can
+ * see what was sent to them (GET /users/me/emails).
+ */
+@Entity
+@Table(
+        name = "sent_emails",
+        indexes = {
+                @Index(name = "idx_sent_emails_recipient", columnList = "recipient, sentAt, id"),
+                @Index(name = "idx_sent_emails_sent_at", columnList = "sentAt")
+        }
+)
+@NamedQueries({
+        @NamedQuery(
+                name = "getSentEmailsByRecipient",
+                query = "SELECT e FROM SentEmail e WHERE e.recipient = :recipient ORDER BY e.sentAt DESC, e.id DESC"
+        ),
+        @NamedQuery(
+                name = "getSentEmailsByRecipientAfter",
+                query = "SELECT e FROM SentEmail e WHERE e.recipient = :recipient "
+                        + "AND (e.sentAt < :sentAt OR (e.sentAt = :sentAt AND e.id < :id)) "
+                        + "ORDER BY e.sentAt DESC, e.id DESC"
+        ),
+        @NamedQuery(
+                name = "deleteSentEmailsBefore",
+                query = "DELETE FROM SentEmail e WHERE e.sentAt < :before"
+        )
+})
+public class SentEmail {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(length = 500)
+    private String subject;
+
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    @Column(nullable = false)
+    private LocalDateTime sentAt;
+
+    public SentEmail() {
+    }
+
+    public SentEmail(String recipient, String subject, String body, LocalDateTime sentAt) {
+        this.recipient = recipient;
+        this.subject = subject != null && subject.length() > 500 ? subject.substring(0, 500) : subject;
+        this.body = body;
+        this.sentAt = sentAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+}
@@ -0,0 +1,97 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An AI summary remembered by the hash of the exact request that produced it
+ * (model, options and prompt text), so resubmitted documents skip the model call.
+ */
+@Entity
+@Table(
+        name = "summary_cache",
+        indexes = {
+                @Index(name = "idx_summary_cache_last_used", columnList = "lastUsedAt")
+        }
+)
+@NamedQueries({
+        @NamedQuery(
+                name = "touchSummaryCacheEntry",
+                query = "UPDATE SummaryCacheEntry e SET e.lastUsedAt = :now, e.hits = e.hits + 1 WHERE e.hash = :hash"
+        ),
+        @NamedQuery(
+                name = "countSummaryCacheEntries",
+                query = "SELECT COUNT(e) FROM SummaryCacheEntry e"
+        ),
+        @NamedQuery(
+                name = "getLeastRecentlyUsedSummaries",
+                query = "SELECT e.hash FROM SummaryCacheEntry e ORDER BY e.lastUsedAt ASC, e.hash ASC"
+        ),
+        @NamedQuery(
+                name = "deleteSummaryCacheEntries",
+                query = "DELETE FROM SummaryCacheEntry e WHERE e.hash IN :hashes"
+        )
+})
+public class SummaryCacheEntry {
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private String model;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lastUsedAt;
+
+    private long hits;
+
+    public SummaryCacheEntry() {
+    }
+
+    public SummaryCacheEntry(String hash, String model, String summary) {
+        this.hash = hash;
+        this.model = model;
+        this.summary = summary;
+        this.createdAt = LocalDateTime.now();
+        this.lastUsedAt = createdAt;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public void setLastUsedAt(LocalDateTime lastUsedAt) {
+        this.lastUsedAt = lastUsedAt;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+}
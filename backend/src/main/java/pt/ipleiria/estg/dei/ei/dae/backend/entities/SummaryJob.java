@@ -0,0 +1,169 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+
+/**
+ * Text extraction (and, when requested, AI summary) of an uploaded document, processed by
+ * SummaryWorkerBean. Kept in the database so pending work survives restarts.
+ */
+@Entity
+@Table(
+        name = "summary_jobs",
+        indexes = {
+                @Index(name = "idx_summary_jobs_status_next", columnList = "status, nextAttemptAt, id"),
+                @Index(name = "idx_summary_jobs_publication", columnList = "publicationId")
+        }
+)
+@NamedQueries({
+        @NamedQuery(
+                name = "getRunnableSummaryJobs",
+                query = "SELECT j FROM SummaryJob j WHERE j.status = :status AND j.nextAttemptAt <= :now ORDER BY j.nextAttemptAt, j.id"
+        ),
+        @NamedQuery(
+                name = "getSummaryJobsByPublication",
+                query = "SELECT j FROM SummaryJob j WHERE j.publicationId = :publicationId ORDER BY j.id DESC"
+        ),
+        @NamedQuery(
+                name = "requeueInterruptedSummaryJobs",
+                query = "UPDATE SummaryJob j SET j.status = :queued WHERE j.status IN :running"
+        ),
+        @NamedQuery(
+                name = "deleteSummaryJobsByPublication",
+                query = "DELETE FROM SummaryJob j WHERE j.publicationId = :publicationId"
+        )
+})
+public class SummaryJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long publicationId;
+
+    // false when the submitter wrote a description: only the text is extracted and indexed
+    private boolean generateSummary;
+
+    private String submitterUsername;
+
+    @NotNull
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private SummaryJobStatus status;
+
+    private int attempts;
+
+    // Pages read while EXTRACTING, then AI calls done / expected while SUMMARIZING (long documents are summarized in chunks)
+    private int progressDone;
+
+    private int progressTotal;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    // Summary text streamed so far, flushed periodically while SUMMARIZING; cleared when the job ends
+    @Column(columnDefinition = "TEXT")
+    private String partialSummary;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    public SummaryJob() {
+    }
+
+    public SummaryJob(Long publicationId, boolean generateSummary, String submitterUsername) {
+        this.publicationId = publicationId;
+        this.generateSummary = generateSummary;
+        this.submitterUsername = submitterUsername;
+        this.status = SummaryJobStatus.QUEUED;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getPublicationId() {
+        return publicationId;
+    }
+
+    public boolean isGenerateSummary() {
+        return generateSummary;
+    }
+
+    public String getSubmitterUsername() {
+        return submitterUsername;
+    }
+
+    public SummaryJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(SummaryJobStatus status) {
+        this.status = status;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getProgressDone() {
+        return progressDone;
+    }
+
+    public int getProgressTotal() {
+        return progressTotal;
+    }
+
+    public void setProgress(int done, int total) {
+        this.progressDone = done;
+        this.progressTotal = total;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError != null && lastError.length() > 1000 ? lastError.substring(0, 1000) : lastError;
+    }
+
+    public String getPartialSummary() {
+        return partialSummary;
+    }
+
+    public void setPartialSummary(String partialSummary) {
+        this.partialSummary = partialSummary;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+}
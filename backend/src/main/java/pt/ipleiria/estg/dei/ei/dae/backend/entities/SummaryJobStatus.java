@@ -0,0 +1,9 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+public enum SummaryJobStatus {
+    QUEUED,
+    EXTRACTING,
+    SUMMARIZING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,136 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.entities;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A resumable upload: the file is sent as fixed-size chunks, in any order, which are
+ * written in place into a staging file until every chunk has arrived.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@NamedQueries({
+        @NamedQuery(
+                name = "getExpiredUploadSessions",
+                query = "SELECT s FROM UploadSession s WHERE s.expiresAt < :now"
+        )
+})
+public class UploadSession {
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @NotNull
+    @ManyToOne
+    @JoinColumn(name = "owner_username", nullable = false)
+    private User owner;
+
+    @NotBlank
+    @Column(nullable = false)
+    private String fileName;
+
+    @NotNull
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private FileType fileType;
+
+    private long totalSize;
+
+    private int chunkSize;
+
+    // SHA-256 announced by the client for the whole file, checked on commit (optional)
+    @Column(length = 64)
+    private String sha256;
+
+    @ElementCollection
+    @CollectionTable(name = "upload_session_chunks", joinColumns = @JoinColumn(name = "session_id"))
+    @Column(name = "chunk_index")
+    private Set<Integer> receivedChunks = new HashSet<>();
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    public UploadSession() {
+    }
+
+    public UploadSession(String id, User owner, String fileName, FileType fileType, long totalSize, int chunkSize,
+                         String sha256, LocalDateTime expiresAt) {
+        this.id = id;
+        this.owner = owner;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.sha256 = sha256;
+        this.createdAt = LocalDateTime.now();
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public User getOwner() {
+        return owner;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public FileType getFileType() {
+        return fileType;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public Set<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public int getChunkCount() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    public long getChunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public long getChunkLength(int index) {
+        return Math.min(chunkSize, totalSize - getChunkOffset(index));
+    }
+
+    public boolean isComplete() {
+        return receivedChunks.size() == getChunkCount();
+    }
+}
@@ -0,0 +1,20 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.exceptions;
+
+import java.time.Duration;
+
+/**
+ * The AI call was rejected without being made (circuit breaker open or bulkhead full),
+ * so it can be retried later without counting as a failed attempt.
+ */
+public class AIUnavailableException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public AIUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
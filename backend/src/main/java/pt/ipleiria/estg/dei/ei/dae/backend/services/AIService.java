@@ -1,32 +1,173 @@
 package pt.ipleiria.estg.dei.ei.dae.backend.services;
 
-import jakarta.ejb.Stateless;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedScheduledExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
-import jakarta.ws.rs.client.Client;
-import jakarta.ws.rs.client.ClientBuilder;
-import jakarta.ws.rs.client.Entity;
-import jakarta.ws.rs.core.MediaType;
-import jakarta.ws.rs.core.Response;
+import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.DocumentBean;
+import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.SummaryCacheBean;
+import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.AIUnavailableException;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.CircuitBreaker;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Metrics;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Settings;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
-@Stateless
+/**
+ * Client for the Ollama generate API. One HttpClient is shared by all calls, so connections
+ * are kept alive and reused; at most "centroXYZ.ai.maxConnections" requests are in flight.
+ * Not an EJB on purpose: a call can outlast the transaction timeout.
+ *
+ * A circuit breaker stops calling the service after "centroXYZ.ai.breakerFailures" failures in
+ * a row; calls then fail fast with AIUnavailableException until a health probe succeeds.
+ *
+ * Summaries are cached by the SHA-256 of the request body, which holds the model, the options
+ * and the document text (or chunk), so the same paper submitted again is answered from the cache
+ * and a retried long document only re-sends the chunks that had not been summarized yet.
+ */
+@ApplicationScoped
 public class AIService {
 
     private static final Logger logger = Logger.getLogger(AIService.class.getName());
 
-    private static final String OLLAMA_URL = "http://ollama:11434/api/generate";
+    private static final int MAX_PROMPT_CHARS = 3000;
+    private static final double TEMPERATURE = 0.5;
+    private static final int NUM_PREDICT = 300;
+    private static final int CHUNK_SUMMARY_WORDS = 80;
+    private static final long CHARS_PER_TOKEN = 4;
+    private static final Duration HEALTH_TIMEOUT = Duration.ofSeconds(5);
 
-    private static final String MODEL = "llama3.2";
+    private String url;
+    private String model;
+    private Duration readTimeout;
+    private Duration stallTimeout;
+    private Duration bulkheadWait;
+    private Duration probeInterval;
+    private String healthUrl;
+    private int chunkChars;
+    private int chunkOverlap;
+    private int chunkParallelism;
+    private long tokenBudget;
 
-    private static final int CONNECT_TIMEOUT_SECONDS = 60;
-    private static final int READ_TIMEOUT_SECONDS = 600;
+    private HttpClient client;
+    private Semaphore connections;
+    private Metrics.Timer calls;
+    private AtomicLong cacheHits;
+    private AtomicLong cacheMisses;
+    private CircuitBreaker breaker;
+    private AtomicLong breakerRejections;
+    private AtomicLong breakerOpenings;
+    private AtomicLong bulkheadRejections;
+    private ScheduledFuture<?> healthProbe;
+
+    @EJB
+    private SummaryCacheBean summaryCacheBean;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        url = Settings.getString("centroXYZ.ai.url", "http://ollama:11434/api/generate");
+        model = Settings.getString("centroXYZ.ai.model", "llama3.2");
+        readTimeout = Duration.ofSeconds(Settings.getLong("centroXYZ.ai.readTimeoutSeconds", 600));
+        stallTimeout = Duration.ofSeconds(Math.max(5, Settings.getLong("centroXYZ.ai.stallTimeoutSeconds", 60)));
+        Duration connectTimeout = Duration.ofSeconds(Settings.getLong("centroXYZ.ai.connectTimeoutSeconds", 60));
+        int maxConnections = Math.max(1, Settings.getInt("centroXYZ.ai.maxConnections", 4));
+        chunkChars = Math.max(500, Settings.getInt("centroXYZ.summary.chunkChars", MAX_PROMPT_CHARS));
+        chunkOverlap = Math.max(0, Math.min(chunkChars / 2, Settings.getInt("centroXYZ.summary.chunkOverlap", 300)));
+        chunkParallelism = Math.max(1, Settings.getInt("centroXYZ.summary.chunkParallelism", 2));
+        tokenBudget = Math.max(1, Settings.getLong("centroXYZ.summary.tokenBudget", 24000));
+
+        bulkheadWait = Duration.ofSeconds(Math.max(0, Settings.getLong("centroXYZ.ai.bulkheadWaitSeconds", 30)));
+        probeInterval = Duration.ofSeconds(Math.max(1, Settings.getLong("centroXYZ.ai.healthProbeSeconds", 10)));
+        healthUrl = Settings.getString("centroXYZ.ai.healthUrl", URI.create(url).resolve("/api/tags").toString());
+        breaker = new CircuitBreaker(
+                Settings.getInt("centroXYZ.ai.breakerFailures", 3),
+                Duration.ofSeconds(Math.max(1, Settings.getLong("centroXYZ.ai.breakerOpenSeconds", 60))));
+
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        connections = new Semaphore(maxConnections, true);
+
+        calls = Metrics.timer("ai.generate");
+        Metrics.gauge("ai.inFlight", () -> maxConnections - connections.availablePermits());
+        Metrics.gauge("ai.waiting", () -> connections.getQueueLength());
+        cacheHits = Metrics.counter("ai.cache.hits");
+        cacheMisses = Metrics.counter("ai.cache.misses");
+        breakerRejections = Metrics.counter("ai.breaker.rejected");
+        breakerOpenings = Metrics.counter("ai.breaker.opened");
+        bulkheadRejections = Metrics.counter("ai.bulkhead.rejected");
+        Metrics.gauge("ai.breaker.state", () -> breaker.getState().name());
+
+        healthProbe = scheduler.scheduleWithFixedDelay(this::probe,
+                probeInterval.toSeconds(), probeInterval.toSeconds(), TimeUnit.SECONDS);
+
+        logger.info("AI service using " + url + " (model " + model + ", max " + maxConnections + " connections)");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (healthProbe != null) {
+            healthProbe.cancel(false);
+        }
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Receives the number of AI calls done so far and the number expected for the document.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        void update(int done, int total);
+    }
 
     public String generateSummary(String documentText) {
+        return generateSummary(documentText, null, null);
+    }
+
+    /**
+     * Short documents are summarized in one prompt. Longer ones are split into overlapping
+     * windows that are summarized in parallel (map) and whose summaries are then summarized,
+     * in groups if needed, into the final one (reduce). The progress listener, when given,
+     * is called on the caller's thread as the calls complete.
+     *
+     * When a partial listener is given, the final call is streamed and the listener receives
+     * the summary generated so far after each token, also on the caller's thread.
+     */
+    public String generateSummary(String documentText, Progress progress, Consumer<String> partial) {
         logger.info("A gerar resumo com IA...");
 
         if (documentText == null || documentText.trim().isEmpty()) {
@@ -34,49 +175,492 @@ public class AIService {
             return "Resumo não disponível (documento vazio)";
         }
 
-        String truncatedText = truncateText(documentText, 3000);
+        if (documentText.length() <= MAX_PROMPT_CHARS) {
+            String summary = complete(summaryPrompt(documentText), partial);
+            report(progress, 1, 1);
+            return summary;
+        }
+
+        List<String> chunks = selectWithinBudget(split(documentText, chunkChars, chunkOverlap));
+        logger.info("Documento com " + documentText.length() + " caracteres resumido em " + chunks.size() + " partes");
+
+        int[] done = {0};
+        int[] total = {chunks.size() + 1};
+        Runnable completed = () -> report(progress, ++done[0], total[0]);
+
+        List<String> prompts = new ArrayList<>();
+        for (String chunk : chunks) {
+            prompts.add(chunkPrompt(chunk));
+        }
+        List<String> partials = completeAll(prompts, completed);
+
+        // Each level groups the partial summaries into prompts of at most chunkChars until one is left
+        while (true) {
+            List<String> groups = group(partials, chunkChars);
+            if (groups.size() == 1) {
+                String summary = complete(combinePrompt(groups.get(0)), partial);
+                report(progress, total[0], total[0]);
+                return summary;
+            }
+            total[0] += groups.size();
+            List<String> reducePrompts = new ArrayList<>();
+            for (String group : groups) {
+                reducePrompts.add(reducePrompt(group));
+            }
+            partials = completeAll(reducePrompts, completed);
+        }
+    }
 
-        String prompt = "Faz um resumo conciso e informativo (máximo 150 palavras) do seguinte documento científico:\n\n"
-                + truncatedText
+    private String summaryPrompt(String text) {
+        return "Faz um resumo conciso e informativo (máximo 150 palavras) do seguinte documento científico:\n\n"
+                + text
                 + "\n\nResumo:";
+    }
 
+    private String combinePrompt(String partialSummaries) {
+        return "Os textos seguintes são resumos de partes consecutivas de um documento científico. "
+                + "Com base neles, faz um resumo conciso e informativo (máximo 150 palavras) do documento completo:\n\n"
+                + partialSummaries
+                + "\n\nResumo:";
+    }
+
+    private String chunkPrompt(String chunk) {
+        return "Resume em no máximo " + CHUNK_SUMMARY_WORDS + " palavras as ideias principais "
+                + "do seguinte excerto de um documento científico:\n\n"
+                + chunk
+                + "\n\nResumo do excerto:";
+    }
+
+    private String reducePrompt(String partialSummaries) {
+        return "Junta os seguintes resumos de partes consecutivas de um documento científico "
+                + "num único resumo com no máximo " + CHUNK_SUMMARY_WORDS + " palavras:\n\n"
+                + partialSummaries
+                + "\n\nResumo:";
+    }
+
+    private String requestBody(String prompt, boolean stream) {
         JsonObject requestBody = Json.createObjectBuilder()
-                .add("model", MODEL)
+                .add("model", model)
                 .add("prompt", prompt)
-                .add("stream", false)
+                .add("stream", stream)
                 .add("options", Json.createObjectBuilder()
-                        .add("temperature", 0.5)
-                        .add("num_predict", 300)
+                        .add("temperature", TEMPERATURE)
+                        .add("num_predict", NUM_PREDICT)
                 )
                 .build();
+        return requestBody.toString();
+    }
+
+    /**
+     * Windows of at most size characters, each starting overlap characters before the end of the
+     * previous one. Windows end at a whitespace when there is one in their second half.
+     */
+    static List<String> split(String text, int size, int overlap) {
+        List<String> windows = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + size);
+            if (end < text.length()) {
+                for (int i = end; i > start + size / 2; i--) {
+                    if (Character.isWhitespace(text.charAt(i - 1))) {
+                        end = i;
+                        break;
+                    }
+                }
+            }
+            windows.add(text.substring(start, end));
+            if (end == text.length()) {
+                break;
+            }
+            start = Math.max(start + 1, end - overlap);
+        }
+        return windows;
+    }
+
+    /**
+     * Keeps the map phase within "centroXYZ.summary.tokenBudget" input tokens. When a document
+     * has more windows than that, windows spread evenly over the whole text are kept, so the
+     * summary still covers the end of the document.
+     */
+    private List<String> selectWithinBudget(List<String> windows) {
+        int maxChunks = (int) Math.max(1, tokenBudget * CHARS_PER_TOKEN / chunkChars);
+        if (windows.size() <= maxChunks) {
+            return windows;
+        }
+        logger.info("Documento excede o orçamento de " + tokenBudget + " tokens: usadas "
+                + maxChunks + " de " + windows.size() + " partes");
+
+        List<String> selected = new ArrayList<>(maxChunks);
+        for (int i = 0; i < maxChunks; i++) {
+            int index = maxChunks == 1 ? 0 : (int) ((long) i * (windows.size() - 1) / (maxChunks - 1));
+            selected.add(windows.get(index));
+        }
+        return selected;
+    }
+
+    /**
+     * Groups always take at least two summaries, even past maxChars, so every level shrinks.
+     */
+    private static List<String> group(List<String> partials, int maxChars) {
+        List<String> groups = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int inCurrent = 0;
+        for (String partial : partials) {
+            String text = partial == null ? "" : partial.trim();
+            if (inCurrent >= 2 && current.length() + text.length() + 2 > maxChars) {
+                groups.add(current.toString());
+                current.setLength(0);
+                inCurrent = 0;
+            }
+            inCurrent++;
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(text);
+        }
+        if (current.length() > 0 || groups.isEmpty()) {
+            groups.add(current.toString());
+        }
+        return groups;
+    }
+
+    private static void report(Progress progress, int done, int total) {
+        if (progress == null) {
+            return;
+        }
+        try {
+            progress.update(done, total);
+        } catch (Exception e) {
+            logger.warning("Erro ao registar o progresso do resumo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * With a partial listener the response is streamed; it is cached under the key of the
+     * non-streamed request, so both modes share the cache.
+     */
+    private String complete(String prompt, Consumer<String> partial) {
+        String cacheKey = sha256(requestBody(prompt, false));
+        String cached = getCached(cacheKey);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            logger.info("Resumo obtido da cache");
+            if (partial != null) {
+                notifyPartial(partial, cached);
+            }
+            return cached;
+        }
+        cacheMisses.incrementAndGet();
+
+        String summary = partial == null
+                ? join(sendAsync(requestBody(prompt, false)))
+                : stream(requestBody(prompt, true), partial);
+        if (summary != null && !summary.trim().isEmpty()) {
+            putCached(cacheKey, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * Sends the prompts with at most "centroXYZ.summary.chunkParallelism" of them in flight
+     * (and never more than the shared connection limit). Results are returned in order; the
+     * cache and the completion callback are only used from the caller's thread.
+     */
+    private List<String> completeAll(List<String> prompts, Runnable completed) {
+        Semaphore permits = new Semaphore(chunkParallelism);
+        List<String> keys = new ArrayList<>(prompts.size());
+        List<CompletableFuture<String>> futures = new ArrayList<>(prompts.size());
+        List<Boolean> fromCache = new ArrayList<>(prompts.size());
+
+        try {
+            for (String prompt : prompts) {
+                String body = requestBody(prompt, false);
+                String cacheKey = sha256(body);
+                keys.add(cacheKey);
+                String cached = getCached(cacheKey);
+                if (cached != null) {
+                    cacheHits.incrementAndGet();
+                    futures.add(CompletableFuture.completedFuture(cached));
+                    fromCache.add(true);
+                    continue;
+                }
+                cacheMisses.incrementAndGet();
+
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrompido à espera de ligação ao serviço de IA", e);
+                }
+                CompletableFuture<String> future;
+                try {
+                    future = sendAsync(body);
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+                future.whenComplete((summary, error) -> permits.release());
+                futures.add(future);
+                fromCache.add(false);
+            }
 
-        Client client = ClientBuilder.newBuilder()
-                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
-                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            List<String> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                String summary = join(futures.get(i));
+                if (!fromCache.get(i) && summary != null && !summary.trim().isEmpty()) {
+                    putCached(keys.get(i), summary);
+                }
+                results.add(summary);
+                completed.run();
+            }
+            return results;
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * Reads Ollama's NDJSON stream ({"response": "...", "done": false} per line) on the caller's
+     * thread. If no line arrives for "centroXYZ.ai.stallTimeoutSeconds" the connection is closed,
+     * so a stalled generation fails in seconds instead of waiting for the read timeout.
+     */
+    private String stream(String body, Consumer<String> partial) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
+        acquireCall();
+        long start = System.nanoTime();
+        boolean success = false;
+        AtomicLong lastLineAt = new AtomicLong(System.nanoTime());
+        AtomicBoolean stalled = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = null;
         try {
-            Response response = client.target(OLLAMA_URL)
-                    .request(MediaType.APPLICATION_JSON)
-                    .post(Entity.json(requestBody.toString()));
-
-            if (response.getStatus() == 200) {
-                String responseBody = response.readEntity(String.class);
-                String summary = extractResponseText(responseBody);
-                logger.info("Resumo gerado com sucesso!");
-                return summary;
-            } else {
-                logger.severe("Erro ao gerar resumo: HTTP " + response.getStatus());
-                throw new RuntimeException("Erro ao comunicar com o serviço de IA: " + response.getStatus());
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            // The watchdog closes the response from another thread, through its own reference
+            InputStream responseBody = response.body();
+            try (InputStream in = responseBody;
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                if (response.statusCode() != 200) {
+                    logger.severe("Erro ao gerar resumo: HTTP " + response.statusCode());
+                    throw new RuntimeException("Erro ao comunicar com o serviço de IA: " + response.statusCode());
+                }
+
+                watchdog = scheduler.scheduleWithFixedDelay(() -> {
+                    if (System.nanoTime() - lastLineAt.get() > stallTimeout.toNanos()) {
+                        stalled.set(true);
+                        try {
+                            responseBody.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }, 1, 1, TimeUnit.SECONDS);
+
+                StringBuilder summary = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lastLineAt.set(System.nanoTime());
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JsonObject chunk;
+                    try (JsonReader json = Json.createReader(new StringReader(line))) {
+                        chunk = json.readObject();
+                    }
+                    if (chunk.containsKey("error")) {
+                        throw new RuntimeException("Erro do serviço de IA: " + chunk.getString("error", ""));
+                    }
+                    String token = chunk.getString("response", "");
+                    if (!token.isEmpty()) {
+                        summary.append(token);
+                        notifyPartial(partial, summary.toString());
+                    }
+                    if (chunk.getBoolean("done", false)) {
+                        logger.info("Resumo gerado com sucesso!");
+                        success = true;
+                        return summary.toString();
+                    }
+                }
+                throw new IOException("Resposta do serviço de IA terminou antes do fim do resumo");
+            }
+        } catch (IOException e) {
+            if (stalled.get()) {
+                logger.severe("Serviço de IA sem resposta há mais de " + stallTimeout.toSeconds() + "s");
+                throw new RuntimeException("Geração do resumo parada há mais de " + stallTimeout.toSeconds() + "s", e);
             }
-        } catch (Exception e) {
             logger.severe("Exceção ao gerar resumo: " + e.getMessage());
             throw new RuntimeException("Erro ao gerar resumo com IA", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Erro ao gerar resumo com IA", e);
         } finally {
-            client.close();
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            releaseCall(start, success);
+        }
+    }
+
+    // A failing listener (e.g. a database write) must not abort the stream or count as an AI failure
+    private static void notifyPartial(Consumer<String> partial, String soFar) {
+        try {
+            partial.accept(soFar);
+        } catch (RuntimeException e) {
+            logger.warning("Erro ao processar resumo parcial: " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<String> sendAsync(String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        acquireCall();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> call;
+        try {
+            call = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            releaseCall(start, false);
+            throw new RuntimeException("Erro ao gerar resumo com IA", e);
+        }
+
+        // Released on the HTTP call itself: a cancelled dependent stage would skip it
+        call.whenComplete((response, error) -> releaseCall(start, error == null && response.statusCode() == 200));
+
+        return call.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.severe("Exceção ao gerar resumo: " + cause.getMessage());
+                throw new RuntimeException("Erro ao gerar resumo com IA", cause);
+            }
+            if (response.statusCode() != 200) {
+                logger.severe("Erro ao gerar resumo: HTTP " + response.statusCode());
+                throw new RuntimeException("Erro ao comunicar com o serviço de IA: " + response.statusCode());
+            }
+            logger.info("Resumo gerado com sucesso!");
+            return extractResponseText(response.body());
+        });
+    }
+
+    /**
+     * Circuit breaker first, then the bulkhead: at most "centroXYZ.ai.maxConnections" calls in
+     * flight, waiting at most "centroXYZ.ai.bulkheadWaitSeconds" for a free slot. Rejected calls
+     * throw AIUnavailableException straight away. Every successful acquireCall must be paired
+     * with a releaseCall.
+     */
+    private void acquireCall() {
+        if (!breaker.allowRequest()) {
+            breakerRejections.incrementAndGet();
+            throw new AIUnavailableException("Serviço de IA indisponível", retryAfter());
+        }
+
+        boolean acquired;
+        try {
+            acquired = connections.tryAcquire(bulkheadWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            breaker.onCancelled();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrompido à espera de ligação ao serviço de IA", e);
+        }
+        if (!acquired) {
+            breaker.onCancelled();
+            bulkheadRejections.incrementAndGet();
+            throw new AIUnavailableException("Serviço de IA sobrecarregado", bulkheadWait);
+        }
+    }
+
+    private void releaseCall(long start, boolean success) {
+        connections.release();
+        calls.record(System.nanoTime() - start, success);
+        if (success) {
+            breaker.onSuccess();
+        } else if (breaker.onFailure()) {
+            breakerOpenings.incrementAndGet();
+            logger.warning("Circuit breaker do serviço de IA aberto após falhas consecutivas");
         }
     }
 
+    private Duration retryAfter() {
+        Duration retryAfter = breaker.getRetryAfter();
+        return retryAfter.compareTo(probeInterval) < 0 ? probeInterval : retryAfter;
+    }
+
+    /**
+     * While the breaker is open, checks every "centroXYZ.ai.healthProbeSeconds" whether the AI
+     * service answers again. A healthy probe lets the next call through as a trial; a failed one
+     * keeps the breaker open for another "centroXYZ.ai.breakerOpenSeconds".
+     */
+    private void probe() {
+        if (breaker.getState() != CircuitBreaker.State.OPEN) {
+            return;
+        }
+        if (isHealthy()) {
+            logger.info("Serviço de IA disponível novamente");
+            breaker.halfOpen();
+        } else {
+            breaker.open();
+        }
+    }
+
+    public boolean isHealthy() {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(healthUrl))
+                .timeout(HEALTH_TIMEOUT)
+                .GET()
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.fine("Serviço de IA sem resposta: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public CircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+
+    private static String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Erro ao gerar resumo com IA", e.getCause());
+        }
+    }
+
+    // The cache only saves work: if it is unavailable the summary is still generated and returned
+    private String getCached(String cacheKey) {
+        try {
+            return summaryCacheBean.get(cacheKey);
+        } catch (Exception e) {
+            logger.warning("Erro ao consultar a cache de resumos: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void putCached(String cacheKey, String summary) {
+        try {
+            summaryCacheBean.put(cacheKey, model, summary);
+        } catch (Exception e) {
+            logger.warning("Erro ao guardar resumo na cache: " + e.getMessage());
+        }
+    }
+
+    private static String sha256(String text) {
+        return HexFormat.of().formatHex(DocumentBean.newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
     private String extractResponseText(String jsonResponse) {
         try (JsonReader reader = Json.createReader(new StringReader(jsonResponse))) {
             JsonObject obj = reader.readObject();
@@ -86,14 +670,4 @@ public class AIService {
             return "";
         }
     }
-
-    private String truncateText(String text, int maxChars) {
-        if (text == null || text.isEmpty()) {
-            return "";
-        }
-        if (text.length() <= maxChars) {
-            return text;
-        }
-        return text.substring(0, maxChars) + "...";
-    }
 }
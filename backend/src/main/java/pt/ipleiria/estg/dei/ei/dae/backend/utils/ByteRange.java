@@ -0,0 +1,79 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+/**
+ * A single HTTP byte range ("bytes=0-499", "bytes=500-", "bytes=-500") resolved against
+ * the length of the resource. Requests for several ranges are not supported and are
+ * answered with the whole resource, which RFC 9110 allows.
+ */
+public class ByteRange {
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long total) {
+        return "bytes " + start + "-" + end + "/" + total;
+    }
+
+    /**
+     * Returns null when the header should be ignored (absent, malformed or multiple ranges)
+     * and throws IllegalArgumentException when the range cannot be satisfied.
+     */
+    public static ByteRange parse(String header, long total) {
+        if (header == null || !header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix == 0) {
+                    throw new IllegalArgumentException("Range not satisfiable");
+                }
+                start = Math.max(0, total - suffix);
+                end = total - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? total - 1 : Math.min(Long.parseLong(last), total - 1);
+                if (end < start && !last.isEmpty() && Long.parseLong(last) < start) {
+                    return null;
+                }
+            }
+
+            if (start >= total || start < 0) {
+                throw new IllegalArgumentException("Range not satisfiable");
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
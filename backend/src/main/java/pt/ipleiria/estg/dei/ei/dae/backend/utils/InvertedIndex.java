@@ -0,0 +1,160 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory inverted index ranked with BM25. Terms are kept sorted so every query
+ * term also matches the indexed terms it is a prefix of, at a reduced weight.
+ * Safe for concurrent readers and writers.
+ */
+public class InvertedIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<Long, Integer> lengths = new HashMap<>();
+    private long totalLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public static class Hit {
+        private final long id;
+        private final double score;
+
+        public Hit(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    public static void addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+        for (String token : TextAnalyzer.tokenize(text)) {
+            termFrequencies.merge(token, weight, Integer::sum);
+        }
+    }
+
+    public void put(long id, Map<String, Integer> termFrequencies) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+            Map<String, Integer> terms = new HashMap<>(termFrequencies);
+            int length = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), k -> new HashMap<>()).put(id, term.getValue());
+                length += term.getValue();
+            }
+            documents.put(id, terms);
+            lengths.put(id, length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            lengths.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns every document matching at least one query term and accepted by the filter,
+     * best score first (ties broken by the most recent id).
+     */
+    public List<Hit> search(String query, LongPredicate filter) {
+        Set<String> queryTerms = new LinkedHashSet<>(TextAnalyzer.tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            double averageLength = documentCount == 0 ? 0 : (double) totalLength / documentCount;
+            Map<Long, Double> scores = new HashMap<>();
+
+            for (String queryTerm : queryTerms) {
+                for (Map.Entry<String, Map<Long, Integer>> term
+                        : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, true).entrySet()) {
+                    double weight = term.getKey().equals(queryTerm) ? 1.0 : PREFIX_WEIGHT;
+                    Map<Long, Integer> docs = term.getValue();
+                    double idf = Math.log(1 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+
+                    for (Map.Entry<Long, Integer> posting : docs.entrySet()) {
+                        long id = posting.getKey();
+                        if (!filter.test(id)) {
+                            continue;
+                        }
+                        int tf = posting.getValue();
+                        double norm = tf + K1 * (1 - B + B * lengths.get(id) / averageLength);
+                        scores.merge(id, weight * idf * tf * (K1 + 1) / norm, Double::sum);
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            scores.forEach((id, score) -> hits.add(new Hit(id, score)));
+            hits.sort((h1, h2) -> h1.score != h2.score
+                    ? Double.compare(h2.score, h1.score)
+                    : Long.compare(h2.id, h1.id));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeUnlocked(long id) {
+        Map<String, Integer> terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            Map<Long, Integer> docs = postings.get(term.getKey());
+            if (docs != null) {
+                docs.remove(id);
+                if (docs.isEmpty()) {
+                    postings.remove(term.getKey());
+                }
+            }
+        }
+        totalLength -= lengths.remove(id);
+    }
+}
@@ -0,0 +1,105 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * In-process metrics (timers, counters and gauges) exposed as JSON by GET /api/metrics.
+ * Values are kept since the application started.
+ */
+public class Metrics {
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<?>> gauges = new ConcurrentHashMap<>();
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    public static AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, k -> new AtomicLong());
+    }
+
+    public static void gauge(String name, Supplier<?> value) {
+        gauges.put(name, value);
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> timerValues = new TreeMap<>();
+        timers.forEach((name, timer) -> timerValues.put(name, timer.snapshot()));
+
+        Map<String, Object> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+
+        Map<String, Object> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.get()));
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timers", timerValues);
+        snapshot.put("counters", counterValues);
+        snapshot.put("gauges", gaugeValues);
+        return snapshot;
+    }
+
+    /**
+     * Call count, error count and latency (total, max and a cumulative histogram in milliseconds).
+     */
+    public static class Timer {
+        private static final long[] BUCKETS_MILLIS = {10, 50, 100, 500, 1_000, 5_000, 30_000, 120_000, 600_000};
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_MILLIS.length + 1);
+
+        public void record(long nanos, boolean success) {
+            count.incrementAndGet();
+            if (!success) {
+                errors.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+
+            long millis = nanos / 1_000_000;
+            int bucket = 0;
+            while (bucket < BUCKETS_MILLIS.length && millis > BUCKETS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        private Map<String, Object> snapshot() {
+            long calls = count.get();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", calls);
+            values.put("errors", errors.get());
+            values.put("meanMillis", calls == 0 ? 0 : totalNanos.get() / calls / 1_000_000);
+            values.put("maxMillis", maxNanos.get() / 1_000_000);
+
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+                cumulative += buckets.get(i);
+                histogram.put("le" + BUCKETS_MILLIS[i], cumulative);
+            }
+            histogram.put("inf", cumulative + buckets.get(BUCKETS_MILLIS.length));
+            values.put("histogram", histogram);
+            return values;
+        }
+    }
+}
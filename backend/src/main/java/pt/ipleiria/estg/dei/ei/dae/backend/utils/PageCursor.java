@@ -0,0 +1,69 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for publication listings. Points at the last row of a page
+ * as (sort, sort value, publicationDate, id) so the next page can continue after it.
+ * Search pages leave the date empty and use the relevance score as value.
+ */
+public class PageCursor {
+    private static final String SEPARATOR = "|";
+
+    private final String sort;
+    private final Double value;
+    private final LocalDate publicationDate;
+    private final long id;
+
+    public PageCursor(String sort, Double value, LocalDate publicationDate, long id) {
+        this.sort = sort;
+        this.value = value;
+        this.publicationDate = publicationDate;
+        this.id = id;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public Double getValue() {
+        return value;
+    }
+
+    public LocalDate getPublicationDate() {
+        return publicationDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = sort + SEPARATOR
+                + (value != null ? value.toString() : "") + SEPARATOR
+                + (publicationDate != null ? publicationDate.toString() : "") + SEPARATOR
+                + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new PageCursor(
+                    parts[0],
+                    parts[1].isEmpty() ? null : Double.valueOf(parts[1]),
+                    parts[2].isEmpty() ? null : LocalDate.parse(parts[2]),
+                    Long.parseLong(parts[3])
+            );
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
@@ -1,28 +1,68 @@
 package pt.ipleiria.estg.dei.ei.dae.backend.utils;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 
 public class PdfTextExtractor {
-    public static String extractText(InputStream pdfInputStream) throws IOException {
-        PDDocument document = null;
-        try {
-            document = PDDocument.load(pdfInputStream);
 
+    // PDFBox keeps up to this much of a document's streams in memory and the rest in a scratch file
+    private static final long MAX_MAIN_MEMORY_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Called after each page with its 1-based number, the page count and the page's text.
+     */
+    @FunctionalInterface
+    public interface PageListener {
+        void onPage(int pageNumber, int pageCount, String text);
+    }
+
+    /**
+     * Extracts page by page and stops after maxPages pages or maxChars characters, so the rest
+     * of a long document is never parsed. The file is read through random access instead of
+     * being buffered whole in memory.
+     */
+    public static String extractText(File pdfFile, int maxPages, long maxChars, PageListener listener) throws IOException {
+        return extractText(PDDocument.load(pdfFile, memoryUsage()), maxPages, maxChars, listener);
+    }
+
+    private static MemoryUsageSetting memoryUsage() {
+        return MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES);
+    }
+
+    private static String extractText(PDDocument document, int maxPages, long maxChars, PageListener listener) throws IOException {
+        try {
             if (document.isEncrypted()) {
                 throw new IOException("O PDF está encriptado e não pode ser processado");
             }
 
             PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+            int pageCount = document.getNumberOfPages();
+            int lastPage = Math.min(pageCount, Math.max(0, maxPages));
 
-        } finally {
-            if (document != null) {
-                document.close();
+            StringBuilder text = new StringBuilder();
+            for (int page = 1; page <= lastPage && text.length() < maxChars; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String pageText = stripper.getText(document);
+
+                long remaining = maxChars - text.length();
+                if (pageText.length() > remaining) {
+                    pageText = pageText.substring(0, (int) remaining);
+                }
+                text.append(pageText);
+
+                if (listener != null) {
+                    listener.onPage(page, pageCount, pageText);
+                }
             }
+            return text.toString();
+
+        } finally {
+            document.close();
         }
     }
 }
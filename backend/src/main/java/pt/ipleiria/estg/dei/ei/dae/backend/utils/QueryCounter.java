@@ -0,0 +1,96 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.logging.Logger;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a budget is open.
+ * Registered through "hibernate.session_factory.statement_inspector" in persistence.xml.
+ *
+ * Bulk loaders wrap their work in {@link #expectAtMost(String, int, Runnable)} so that a change
+ * reintroducing per-row queries is reported instead of silently slowing listings down.
+ * Set the system property "centroXYZ.queryBudget.strict" to true to fail instead of logging.
+ * Budgets may nest; the thread's counter only exists while at least one is open, so pooled
+ * server threads do not keep it.
+ */
+public class QueryCounter implements StatementInspector {
+
+    private static final Logger logger = Logger.getLogger(QueryCounter.class.getName());
+
+    private static final ThreadLocal<Counter> counter = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Counter current = counter.get();
+        if (current != null) {
+            current.queries++;
+        }
+        return sql;
+    }
+
+    /**
+     * Runs work within the budget and returns the number of statements it prepared.
+     */
+    public static long expectAtMost(String operation, int maxQueries, Runnable work) {
+        try (Budget budget = expectAtMost(operation, maxQueries)) {
+            work.run();
+            return budget.used();
+        }
+    }
+
+    public static Budget expectAtMost(String operation, int maxQueries) {
+        Counter current = counter.get();
+        if (current == null) {
+            current = new Counter();
+            counter.set(current);
+        }
+        current.open++;
+        return new Budget(operation, maxQueries, current);
+    }
+
+    private static class Counter {
+        private long queries;
+        private int open;
+    }
+
+    public static class Budget implements AutoCloseable {
+        private final String operation;
+        private final int maxQueries;
+        private final Counter counter;
+        private final long start;
+        private boolean closed;
+
+        private Budget(String operation, int maxQueries, Counter counter) {
+            this.operation = operation;
+            this.maxQueries = maxQueries;
+            this.counter = counter;
+            this.start = counter.queries;
+        }
+
+        public long used() {
+            return counter.queries - start;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (--counter.open == 0) {
+                QueryCounter.counter.remove();
+            }
+
+            long used = used();
+            if (used <= maxQueries) {
+                return;
+            }
+            String message = operation + " executed " + used + " queries (budget: " + maxQueries + ")";
+            if (Boolean.getBoolean("centroXYZ.queryBudget.strict")) {
+                throw new IllegalStateException(message);
+            }
+            logger.warning(message);
+        }
+    }
+}
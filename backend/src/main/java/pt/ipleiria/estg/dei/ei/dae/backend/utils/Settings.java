@@ -0,0 +1,38 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Runtime settings read from a system property ("centroXYZ.summary.workers") or, when that is
+ * not set, from the matching environment variable ("CENTROXYZ_SUMMARY_WORKERS").
+ */
+public class Settings {
+
+    private static final Logger logger = Logger.getLogger(Settings.class.getName());
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            value = System.getenv(key.replace('.', '_').toUpperCase(Locale.ROOT));
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
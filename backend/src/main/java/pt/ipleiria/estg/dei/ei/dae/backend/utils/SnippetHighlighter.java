@@ -0,0 +1,119 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cuts short fragments around the words of a text that match a search query and wraps
+ * the matches in &lt;mark&gt; tags. Matching uses the same folding as the search index,
+ * so a query for "analise" highlights "Análise".
+ */
+public class SnippetHighlighter {
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{M}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final int CONTEXT = 60;
+    private static final int MAX_SNIPPET_LENGTH = 3 * CONTEXT;
+
+    public static List<String> highlight(String text, String query, int maxSnippets) {
+        List<String> snippets = new ArrayList<>();
+        Set<String> queryTerms = new LinkedHashSet<>(TextAnalyzer.tokenize(query));
+        if (text == null || text.isEmpty() || queryTerms.isEmpty()) {
+            return snippets;
+        }
+
+        List<int[]> matches = new ArrayList<>();
+        Matcher word = WORD.matcher(text);
+        while (word.find()) {
+            String folded = TextAnalyzer.fold(word.group());
+            for (String term : queryTerms) {
+                if (folded.startsWith(term)) {
+                    matches.add(new int[]{word.start(), word.end()});
+                    break;
+                }
+            }
+        }
+
+        int next = 0;
+        while (next < matches.size() && snippets.size() < maxSnippets) {
+            int start = Math.max(0, matches.get(next)[0] - CONTEXT);
+            int end = Math.min(text.length(), matches.get(next)[1] + CONTEXT);
+
+            int last = next;
+            while (last + 1 < matches.size()
+                    && matches.get(last + 1)[1] <= start + MAX_SNIPPET_LENGTH
+                    && matches.get(last + 1)[0] < end) {
+                last++;
+                end = Math.min(text.length(), Math.max(end, matches.get(last)[1] + CONTEXT));
+            }
+            end = Math.min(end, Math.max(start + MAX_SNIPPET_LENGTH, matches.get(last)[1]));
+
+            snippets.add(render(text, start, end, matches.subList(next, last + 1)));
+            next = last + 1;
+        }
+
+        return snippets;
+    }
+
+    private static String render(String text, int start, int end, List<int[]> matches) {
+        // Avoid cutting words in half at the edges of the fragment
+        if (start > 0) {
+            int space = indexOfWhitespace(text, start, matches.get(0)[0]);
+            if (space >= 0) {
+                start = space + 1;
+            }
+        }
+        if (end < text.length()) {
+            int space = lastIndexOfWhitespace(text, matches.get(matches.size() - 1)[1], end);
+            if (space >= 0) {
+                end = space;
+            }
+        }
+
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) {
+            snippet.append("…");
+        }
+        int position = start;
+        for (int[] match : matches) {
+            snippet.append(escape(text.substring(position, match[0])))
+                    .append("<mark>")
+                    .append(escape(text.substring(match[0], match[1])))
+                    .append("</mark>");
+            position = match[1];
+        }
+        snippet.append(escape(text.substring(position, end)));
+        if (end < text.length()) {
+            snippet.append("…");
+        }
+
+        return WHITESPACE.matcher(snippet).replaceAll(" ").trim();
+    }
+
+    private static int indexOfWhitespace(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfWhitespace(String text, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -1,59 +1,189 @@
 package pt.ipleiria.estg.dei.ei.dae.backend.utils;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class ZipTextExtractor {
 
-    public static String extractTextFromPDFs(InputStream zipInputStream) throws IOException {
-        List<String> pdfTexts = new ArrayList<>();
-
-        try (ZipInputStream zis = new ZipInputStream(zipInputStream)) {
-            ZipEntry entry;
-
-            while ((entry = zis.getNextEntry()) != null) {
-                String fileName = entry.getName().toLowerCase();
+    private static final Logger logger = Logger.getLogger(ZipTextExtractor.class.getName());
+
+    private static final String SEPARATOR = "\n\n=== PRÓXIMO DOCUMENTO ===\n\n";
+
+    // A single PDF bigger than this once decompressed is skipped (also guards against zip bombs)
+    private static final long MAX_ENTRY_BYTES = 512L * 1024 * 1024;
+
+    // Once stopped, entries end at their next page; one stuck longer than this is abandoned
+    private static final Duration STOP_GRACE = Duration.ofSeconds(30);
+
+    /**
+     * Extracts the PDFs of a stored ZIP through random access, at most parallelism at a time on
+     * the given executor. Each entry is spilled to a temporary file and parsed from there, and
+     * the entries being parsed together add up to at most memoryBudgetBytes of PDF (an entry
+     * bigger than the budget is parsed alone). The texts are joined in the ZIP's own entry order
+     * and cut at maxChars. Each entry is only parsed up to the characters still missing when it
+     * starts; once maxChars is reached the remaining entries are not parsed, the ones being
+     * parsed stop at their next page, and all are finished before the ZIP is closed.
+     * The executor must not be the one running the caller, or the caller can end up waiting for
+     * entries queued behind itself. Past timeout the extraction stops and fails with an
+     * IOException, so a partial text is never returned as if it were complete.
+     */
+    public static String extractTextFromPDFs(File zipFile, Executor executor, int parallelism,
+                                             long maxChars, long memoryBudgetBytes, Duration timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        int budgetKiB = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudgetBytes / 1024));
+        Semaphore memory = new Semaphore(budgetKiB);
+        int maxInFlight = Math.max(1, parallelism);
+
+        StringBuilder text = new StringBuilder();
+        int documents = 0;
+        Deque<CompletableFuture<String>> inFlight = new ArrayDeque<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            List<? extends ZipEntry> pdfs = zip.stream()
+                    .filter(entry -> !entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).endsWith(".pdf"))
+                    .collect(Collectors.toList());
+
+            try {
+                for (ZipEntry entry : pdfs) {
+                    while (inFlight.size() >= maxInFlight && text.length() < maxChars) {
+                        documents = append(text, inFlight.poll(), documents, maxChars, deadline);
+                    }
+                    if (text.length() >= maxChars) {
+                        break;
+                    }
 
-                if (!entry.isDirectory() && fileName.endsWith(".pdf")) {
+                    long remaining = maxChars - text.length();
+                    int weight = (int) Math.min(budgetKiB, Math.max(1, Math.max(entry.getSize(), entry.getCompressedSize()) / 1024));
+                    memory.acquireUninterruptibly(weight);
                     try {
-                        byte[] pdfBytes = readEntryBytes(zis);
-
-                        InputStream pdfStream = new ByteArrayInputStream(pdfBytes);
-
-                        String pdfText = PdfTextExtractor.extractText(pdfStream);
-                        pdfTexts.add(pdfText);
-
-                    } catch (Exception e) {
-                        System.err.println("Erro ao extrair PDF '" + entry.getName() + "': " + e.getMessage());
+                        inFlight.add(CompletableFuture.supplyAsync(() -> stopped.get() ? null : extractEntry(zip, entry, remaining, stopped), executor)
+                                .whenComplete((result, error) -> memory.release(weight)));
+                    } catch (RuntimeException e) {
+                        memory.release(weight);
+                        throw e;
                     }
                 }
 
-                zis.closeEntry();
+                while (!inFlight.isEmpty() && text.length() < maxChars) {
+                    documents = append(text, inFlight.poll(), documents, maxChars, deadline);
+                }
+            } finally {
+                // Entries past maxChars that have not started yet are skipped; none should still be reading when the ZIP closes
+                stopped.set(true);
+                long grace = System.nanoTime() + STOP_GRACE.toNanos();
+                for (CompletableFuture<String> pending : inFlight) {
+                    try {
+                        pending.get(Math.max(0, grace - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    } catch (ExecutionException ignored) {
+                    } catch (TimeoutException e) {
+                        logger.warning("Extração de PDF do ZIP não terminou após " + STOP_GRACE.toSeconds() + "s: abandonada");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
             }
         }
 
-        if (pdfTexts.isEmpty()) {
-            return "";
+        return text.toString();
+    }
+
+    private static int append(StringBuilder text, CompletableFuture<String> pending, int documents, long maxChars,
+                              long deadline) throws IOException {
+        String pdfText;
+        try {
+            pdfText = pending.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return documents;
+        } catch (TimeoutException e) {
+            throw new IOException("Tempo limite de extração do ZIP excedido");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Extração do ZIP interrompida");
+        }
+        if (pdfText == null) {
+            return documents;
         }
 
-        return String.join("\n\n=== PRÓXIMO DOCUMENTO ===\n\n", pdfTexts);
+        if (documents > 0) {
+            text.append(SEPARATOR);
+        }
+        long remaining = maxChars - text.length();
+        text.append(pdfText.length() > remaining ? pdfText.substring(0, (int) Math.max(0, remaining)) : pdfText);
+        if (text.length() > maxChars) {
+            text.setLength((int) maxChars);
+        }
+        return documents + 1;
     }
 
-    private static byte[] readEntryBytes(ZipInputStream zis) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] buffer = new byte[1024];
-        int len;
-
-        while ((len = zis.read(buffer)) > 0) {
-            baos.write(buffer, 0, len);
+    /**
+     * Returns null (and logs) for an entry that cannot be extracted, as before: one bad PDF does
+     * not lose the text of the others. Also returns null, between pages, once stopped is set.
+     */
+    private static String extractEntry(ZipFile zip, ZipEntry entry, long maxChars, AtomicBoolean stopped) {
+        Path spilled = null;
+        try {
+            spilled = Files.createTempFile("zip-entry-", ".pdf");
+            try (InputStream in = zip.getInputStream(entry);
+                 OutputStream out = Files.newOutputStream(spilled)) {
+                byte[] buffer = new byte[64 * 1024];
+                long copied = 0;
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    copied += len;
+                    if (copied > MAX_ENTRY_BYTES) {
+                        throw new IOException("PDF excede " + (MAX_ENTRY_BYTES / (1024 * 1024)) + " MB descomprimido");
+                    }
+                    out.write(buffer, 0, len);
+                }
+            }
+            return PdfTextExtractor.extractText(spilled.toFile(), Integer.MAX_VALUE, maxChars, (page, pageCount, pageText) -> {
+                if (stopped.get()) {
+                    throw new Stopped();
+                }
+            });
+        } catch (Stopped e) {
+            return null;
+        } catch (Exception e) {
+            logger.warning("Erro ao extrair PDF '" + entry.getName() + "': " + e.getMessage());
+            return null;
+        } finally {
+            if (spilled != null) {
+                try {
+                    Files.deleteIfExists(spilled);
+                } catch (IOException ignored) {
+                }
+            }
         }
+    }
 
-        return baos.toByteArray();
+    private static class Stopped extends RuntimeException {
+        private Stopped() {
+            super(null, null, false, false);
+        }
     }
 
     public static List<String> listFiles(InputStream zipInputStream) throws IOException {
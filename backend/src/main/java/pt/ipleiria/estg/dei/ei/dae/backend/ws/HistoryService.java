@@ -9,17 +9,23 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 import pt.ipleiria.estg.dei.ei.dae.backend.dtos.HistoryDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.HistoryBean;
 import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.PublicationBean;
 import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.UserBean;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.ActivityType;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.History;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.Publication;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.User;
 import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityNotFoundException;
 import pt.ipleiria.estg.dei.ei.dae.backend.security.Authenticated;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.TimeCursor;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 @Path("history")
 @Produces({MediaType.APPLICATION_JSON})
@@ -40,17 +46,57 @@ public class HistoryService {
     private SecurityContext securityContext;
 
 
+    /**
+     * The whole audit trail, always paginated. Filters: action (ActivityType), entity, user and
+     * the time range [from, to) as ISO date-times.
+     */
+    @GET
+    @RolesAllowed({"ADMINISTRADOR"})
+    public Response getHistory(@QueryParam("action") String action,
+                               @QueryParam("entity") String entity,
+                               @QueryParam("user") String username,
+                               @QueryParam("from") String from,
+                               @QueryParam("to") String to,
+                               @QueryParam("limit") Integer limit,
+                               @QueryParam("cursor") String cursor) {
+        try {
+            HistoryBean.Filter filter = filter(action, entity, from, to).username(username);
+            return page(filter, limit, cursor, HistoryDTO::fromWithUser);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        }
+    }
+
+
     @GET
     @Path("/{username}")
     @RolesAllowed({"ADMINISTRADOR"})
-    public Response getUserHistory(@PathParam("username") String username) {
+    public Response getUserHistory(@PathParam("username") String username,
+                                   @QueryParam("action") String action,
+                                   @QueryParam("entity") String entity,
+                                   @QueryParam("from") String from,
+                                   @QueryParam("to") String to,
+                                   @QueryParam("limit") Integer limit,
+                                   @QueryParam("cursor") String cursor) {
         try {
             userBean.find(username);
 
-            List<History> activities = historyBean.getUserHistory(username);
+            if (isPaged(action, entity, from, to, limit, cursor)) {
+                HistoryBean.Filter filter = filter(action, entity, from, to).username(username);
+                return page(filter, limit, cursor, HistoryDTO::from);
+            }
+
+            // Without limit, cursor or filters: the latest MAX_PAGE_SIZE activities as a plain list
+            List<History> activities = historyBean.getUserHistory(username, PublicationBean.MAX_PAGE_SIZE);
             List<HistoryDTO> dtos = HistoryDTO.from(activities);
 
             return Response.ok(dtos).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
         } catch (MyEntityNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Map.of("message", "Utilizador não encontrado"))
@@ -66,14 +112,29 @@ public class HistoryService {
     @GET
     @Path("/me")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
-    public Response getMyHistory() {
+    public Response getMyHistory(@QueryParam("action") String action,
+                                 @QueryParam("entity") String entity,
+                                 @QueryParam("from") String from,
+                                 @QueryParam("to") String to,
+                                 @QueryParam("limit") Integer limit,
+                                 @QueryParam("cursor") String cursor) {
         try {
             String currentUsername = securityContext.getUserPrincipal().getName();
 
-            List<History> activities = historyBean.getUserHistory(currentUsername);
+            if (isPaged(action, entity, from, to, limit, cursor)) {
+                HistoryBean.Filter filter = filter(action, entity, from, to).username(currentUsername);
+                return page(filter, limit, cursor, HistoryDTO::from);
+            }
+
+            // Without limit, cursor or filters: the latest MAX_PAGE_SIZE activities as a plain list
+            List<History> activities = historyBean.getUserHistory(currentUsername, PublicationBean.MAX_PAGE_SIZE);
             List<HistoryDTO> dtos = HistoryDTO.from(activities);
 
             return Response.ok(dtos).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(Map.of("message", "Erro ao obter histórico"))
@@ -85,7 +146,13 @@ public class HistoryService {
     @GET
     @Path("/me/posts/{post_id}")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
-    public Response getMyPublicationHistory(@PathParam("post_id") Long postId) {
+    public Response getMyPublicationHistory(@PathParam("post_id") Long postId,
+                                            @QueryParam("action") String action,
+                                            @QueryParam("entity") String entity,
+                                            @QueryParam("from") String from,
+                                            @QueryParam("to") String to,
+                                            @QueryParam("limit") Integer limit,
+                                            @QueryParam("cursor") String cursor) {
         try {
             String currentUsername = securityContext.getUserPrincipal().getName();
             User currentUser = userBean.find(currentUsername);
@@ -104,10 +171,20 @@ public class HistoryService {
                         .build();
             }
 
-            List<History> activities = historyBean.getPublicationHistory(postId);
+            if (isPaged(action, entity, from, to, limit, cursor)) {
+                HistoryBean.Filter filter = filter(action, entity, from, to).publication(postId);
+                return page(filter, limit, cursor, HistoryDTO::fromWithUser);
+            }
+
+            // Without limit, cursor or filters: the latest MAX_PAGE_SIZE activities as a plain list
+            List<History> activities = historyBean.getPublicationHistory(postId, PublicationBean.MAX_PAGE_SIZE);
             List<HistoryDTO> dtos = HistoryDTO.fromWithUser(activities);
 
             return Response.ok(dtos).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
         } catch (MyEntityNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Map.of("message", e.getMessage()))
@@ -123,7 +200,13 @@ public class HistoryService {
     @GET
     @Path("/posts/{post_id}")
     @RolesAllowed({"ADMINISTRADOR"})
-    public Response getPublicationHistory(@PathParam("post_id") Long postId) {
+    public Response getPublicationHistory(@PathParam("post_id") Long postId,
+                                          @QueryParam("action") String action,
+                                          @QueryParam("entity") String entity,
+                                          @QueryParam("from") String from,
+                                          @QueryParam("to") String to,
+                                          @QueryParam("limit") Integer limit,
+                                          @QueryParam("cursor") String cursor) {
         try {
             Publication publication = publicationBean.find(postId);
             if (publication == null) {
@@ -132,14 +215,64 @@ public class HistoryService {
                         .build();
             }
 
-            List<History> activities = historyBean.getPublicationHistory(postId);
+            if (isPaged(action, entity, from, to, limit, cursor)) {
+                HistoryBean.Filter filter = filter(action, entity, from, to).publication(postId);
+                return page(filter, limit, cursor, HistoryDTO::fromWithUser);
+            }
+
+            // Without limit, cursor or filters: the latest MAX_PAGE_SIZE activities as a plain list
+            List<History> activities = historyBean.getPublicationHistory(postId, PublicationBean.MAX_PAGE_SIZE);
             List<HistoryDTO> dtos = HistoryDTO.fromWithUser(activities);
 
             return Response.ok(dtos).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(Map.of("message", "Erro ao obter histórico: " + e.getMessage()))
                     .build();
         }
     }
+
+    // Without limit, cursor or filters the endpoints keep returning a plain list, capped like /users/me/emails
+    private static boolean isPaged(String action, String entity, String from, String to, Integer limit, String cursor) {
+        return action != null || entity != null || from != null || to != null || limit != null || cursor != null;
+    }
+
+    private static HistoryBean.Filter filter(String action, String entity, String from, String to) {
+        HistoryBean.Filter filter = new HistoryBean.Filter().entity(entity);
+        if (action != null) {
+            try {
+                filter.action(ActivityType.valueOf(action));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tipo de atividade inválido: " + action);
+            }
+        }
+        return filter.from(dateTime("from", from)).to(dateTime("to", to));
+    }
+
+    private static LocalDateTime dateTime(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("O parâmetro '" + name + "' deve ser uma data no formato ISO (ex.: 2024-01-31T00:00:00)");
+        }
+    }
+
+    private Response page(HistoryBean.Filter filter, Integer limit, String cursor,
+                          Function<List<History>, List<HistoryDTO>> toDTOs) {
+        int pageSize = limit != null ? limit : PublicationBean.DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > PublicationBean.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("O parâmetro 'limit' deve estar entre 1 e " + PublicationBean.MAX_PAGE_SIZE);
+        }
+
+        TimeCursor after = cursor != null ? TimeCursor.decode(cursor) : null;
+        PageDTO<History> page = historyBean.getPage(filter, after, pageSize);
+        return Response.ok(new PageDTO<>(toDTOs.apply(page.getItems()), page.getNext())).build();
+    }
 }
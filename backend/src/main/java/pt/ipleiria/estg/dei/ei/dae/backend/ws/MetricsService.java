@@ -0,0 +1,42 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ws;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import pt.ipleiria.estg.dei.ei.dae.backend.security.Authenticated;
+import pt.ipleiria.estg.dei.ei.dae.backend.services.AIService;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Path("metrics")
+@Produces({MediaType.APPLICATION_JSON})
+@Authenticated
+public class MetricsService {
+
+    @Inject
+    private AIService aiService;
+
+    @GET
+    @Path("/")
+    @RolesAllowed({"ADMINISTRADOR"})
+    public Response getMetrics() {
+        return Response.ok(Metrics.snapshot()).build();
+    }
+
+    @GET
+    @Path("ai-health")
+    @RolesAllowed({"ADMINISTRADOR"})
+    public Response getAiHealth() {
+        boolean healthy = aiService.isHealthy();
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", healthy ? "UP" : "DOWN");
+        health.put("breaker", aiService.getBreakerState().name());
+        return Response.status(healthy ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(health)
+                .build();
+    }
+}
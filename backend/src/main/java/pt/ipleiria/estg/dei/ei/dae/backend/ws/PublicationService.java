@@ -7,16 +7,28 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 import pt.ipleiria.estg.dei.ei.dae.backend.dtos.CommentDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PublicationDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.dtos.RatingDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.SummaryJobDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.*;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.*;
 import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityNotFoundException;
 import pt.ipleiria.estg.dei.ei.dae.backend.security.Authenticated;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.ByteRange;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.PageCursor;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +41,9 @@ import java.util.stream.Collectors;
 @Consumes({MediaType.APPLICATION_JSON})
 @Authenticated
 public class PublicationService {
+    // Below this many results the search response also carries each publication's last comment
+    private static final int SEARCH_COMMENTS_THRESHOLD = 45;
+
     @EJB
     private PublicationBean publicationBean;
 
@@ -44,6 +59,12 @@ public class PublicationService {
     @EJB
     private TagBean tagBean;
 
+    @EJB
+    private SummaryJobBean summaryJobBean;
+
+    @EJB
+    private SummaryStreamBean summaryStreamBean;
+
     @Context
     private SecurityContext securityContext;
 
@@ -51,14 +72,20 @@ public class PublicationService {
     @GET
     @Path("/")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
-    public Response getPublications(@QueryParam("sort") String sortBy) {
+    public Response getPublications(@QueryParam("sort") String sortBy,
+                                    @QueryParam("limit") Integer limit,
+                                    @QueryParam("cursor") String cursor) {
+        if (limit != null || cursor != null) {
+            return getPublicationsPage(sortBy, limit, cursor);
+        }
+
         if (sortBy == null) {
             boolean isAdminOrResponsavel = securityContext.isUserInRole("RESPONSAVEL") ||
                     securityContext.isUserInRole("ADMINISTRADOR");
 
             List<Publication> publications = isAdminOrResponsavel
-                    ? publicationBean.getAllWithAllDetails()
-                    : publicationBean.getAllVisibleWithAllDetails();
+                    ? publicationBean.getAll()
+                    : publicationBean.getAllVisible();
 
             List<PublicationDTO> dtos = PublicationDTO.toPublicationList(publications);
 
@@ -68,42 +95,59 @@ public class PublicationService {
         boolean isAdminOrResponsavel = securityContext.isUserInRole("RESPONSAVEL") ||
                 securityContext.isUserInRole("ADMINISTRADOR");
 
-        List<Publication> publications = isAdminOrResponsavel
-                ? publicationBean.getAll()
-                : publicationBean.getAllVisible();
-
-        switch (sortBy.toLowerCase()) {
-            case "recent":
-                publications.sort((p1, p2) -> p2.getPublicationDate().compareTo(p1.getPublicationDate()));
-                break;
-            case "comments":
-                publications = isAdminOrResponsavel
-                        ? publicationBean.getAllWithComments()
-                        : publicationBean.getAllVisibleWithComments();
-                publications.sort((p1, p2) -> Integer.compare(p2.getComments().size(), p1.getComments().size()));
-                break;
-            case "rating":
-                publications = isAdminOrResponsavel
-                        ? publicationBean.getAllWithRatings()
-                        : publicationBean.getAllVisibleWithRatings();
-                publications.sort((p1, p2) -> {
-                    Double avg1 = p1.getAverageRating();
-                    Double avg2 = p2.getAverageRating();
-                    if (avg1 == null) avg1 = 0.0;
-                    if (avg2 == null) avg2 = 0.0;
-                    return Double.compare(avg2, avg1);
-                });
-                break;
-            default:
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(Map.of("message", "Critério de ordenação inválido"))
-                        .build();
+        String sort = sortBy.toLowerCase();
+        if (!isValidSort(sort)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "Critério de ordenação inválido"))
+                    .build();
         }
 
+        List<Publication> publications = publicationBean.getSorted(sort, isAdminOrResponsavel);
+
         List<PublicationDTO> dtos = PublicationDTO.toSortedList(publications);
         return Response.ok(dtos).build();
     }
 
+    private Response getPublicationsPage(String sortBy, Integer limit, String cursor) {
+        String sort = sortBy != null ? sortBy.toLowerCase() : PublicationBean.SORT_RECENT;
+        if (!isValidSort(sort)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "Critério de ordenação inválido"))
+                    .build();
+        }
+
+        int pageSize = limit != null ? limit : PublicationBean.DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > PublicationBean.MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "O parâmetro 'limit' deve estar entre 1 e " + PublicationBean.MAX_PAGE_SIZE))
+                    .build();
+        }
+
+        boolean isAdminOrResponsavel = securityContext.isUserInRole("RESPONSAVEL") ||
+                securityContext.isUserInRole("ADMINISTRADOR");
+
+        try {
+            PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+            PageDTO<Publication> page = publicationBean.getPage(sort, isAdminOrResponsavel, after, pageSize);
+
+            List<PublicationDTO> dtos = sortBy == null
+                    ? PublicationDTO.toPublicationList(page.getItems())
+                    : PublicationDTO.toSortedList(page.getItems());
+
+            return Response.ok(new PageDTO<>(dtos, page.getNext())).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        }
+    }
+
+    private static boolean isValidSort(String sort) {
+        return sort.equals(PublicationBean.SORT_RECENT)
+                || sort.equals(PublicationBean.SORT_COMMENTS)
+                || sort.equals(PublicationBean.SORT_RATING);
+    }
+
     @GET
     @Path("{id}")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
@@ -141,6 +185,204 @@ public class PublicationService {
         }
     }
 
+    @GET
+    @Path("{id}/summary-status")
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response getSummaryStatus(@PathParam("id") Long id) throws MyEntityNotFoundException {
+        Publication publication = publicationBean.find(id);
+        if (publication == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", "Publicação não encontrada"))
+                    .build();
+        }
+
+        User user = userBean.find(securityContext.getUserPrincipal().getName());
+        if (!publicationBean.canView(publication, user)) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity(Map.of("message", "Não tem permissão para ver esta publicação"))
+                    .build();
+        }
+
+        SummaryJob job = summaryJobBean.findLatest(id);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", "Não existe processamento de resumo para esta publicação"))
+                    .build();
+        }
+
+        return Response.ok(SummaryJobDTO.from(job)).build();
+    }
+
+    /**
+     * Server-Sent Events with the summary as it is generated (see SummaryStreamBean). When no
+     * summary is being generated, a single "done" or "failed" event with the current description
+     * is sent and the stream is closed.
+     */
+    @GET
+    @Path("{id}/summary/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public void streamSummary(@PathParam("id") Long id, @Context SseEventSink sink, @Context Sse sse)
+            throws MyEntityNotFoundException {
+        Publication publication = publicationBean.find(id);
+        if (publication == null) {
+            throw new MyEntityNotFoundException("Publicação não encontrada");
+        }
+
+        User user = userBean.find(securityContext.getUserPrincipal().getName());
+        if (!publicationBean.canView(publication, user)) {
+            throw new ForbiddenException("Não tem permissão para ver esta publicação");
+        }
+
+        SummaryJob job = summaryJobBean.findLatest(id);
+        if (job == null || !isRunning(job)) {
+            boolean failed = job != null && job.getStatus() == SummaryJobStatus.FAILED;
+            summaryStreamBean.sendFinished(sink, sse, publication.getDescription(), failed);
+            return;
+        }
+
+        summaryStreamBean.subscribe(id, sink, sse);
+
+        // The job may have finished between the check above and the subscription
+        job = summaryJobBean.findLatest(id);
+        if (job != null && !isRunning(job)) {
+            summaryStreamBean.finish(id, publicationBean.find(id).getDescription(), job.getStatus() == SummaryJobStatus.FAILED);
+        }
+    }
+
+    private static boolean isRunning(SummaryJob job) {
+        return job.isGenerateSummary()
+                && job.getStatus() != SummaryJobStatus.DONE
+                && job.getStatus() != SummaryJobStatus.FAILED;
+    }
+
+    @GET
+    @Path("{id}/document")
+    @Produces({"application/pdf", "application/zip", MediaType.APPLICATION_OCTET_STREAM, MediaType.APPLICATION_JSON})
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response downloadDocument(@PathParam("id") Long id,
+                                     @HeaderParam("Range") String rangeHeader,
+                                     @HeaderParam("If-Range") String ifRange,
+                                     @HeaderParam("If-None-Match") String ifNoneMatch)
+            throws MyEntityNotFoundException {
+        Publication publication = publicationBean.find(id);
+        if (publication == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("message", "Publicação não encontrada"))
+                    .build();
+        }
+
+        User user = userBean.find(securityContext.getUserPrincipal().getName());
+        if (!publicationBean.canView(publication, user)) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("message", "Não tem permissão para ver esta publicação"))
+                    .build();
+        }
+
+        Document document = publication.getDocument();
+        java.nio.file.Path file = document != null && document.getFilePath() != null
+                ? Paths.get(document.getFilePath())
+                : null;
+        if (file == null || !Files.isRegularFile(file)) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("message", "Documento não encontrado"))
+                    .build();
+        }
+
+        // The content hash identifies the bytes exactly, so it is a strong validator
+        String etag = document.getSha256() != null ? "\"" + document.getSha256() + "\"" : null;
+        if (etag != null && ifNoneMatch != null && matchesETag(ifNoneMatch, etag)) {
+            return Response.notModified().header("ETag", etag).build();
+        }
+
+        long total;
+        try {
+            total = Files.size(file);
+        } catch (java.io.IOException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("message", "Erro ao ler o documento"))
+                    .build();
+        }
+
+        ByteRange range = null;
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                range = ByteRange.parse(rangeHeader, total);
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", "bytes */" + total)
+                        .build();
+            }
+        }
+
+        long start = range != null ? range.getStart() : 0;
+        long length = range != null ? range.getLength() : total;
+
+        StreamingOutput body = output -> copyRange(file, start, length, output);
+
+        String contentType = document.getFileType() == FileType.PDF ? "application/pdf" : "application/zip";
+        Response.ResponseBuilder response = (range != null
+                ? Response.status(Response.Status.PARTIAL_CONTENT).header("Content-Range", range.toContentRange(total))
+                : Response.ok())
+                .entity(body)
+                .type(contentType)
+                .header("Content-Length", length)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", contentDisposition(document.getFileName()));
+        if (etag != null) {
+            response.header("ETag", etag);
+        }
+        return response.build();
+    }
+
+    /**
+     * If-None-Match uses the weak comparison (RFC 9110 13.1.2): a W/ prefix is ignored, and the
+     * header may list several tags.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * An ASCII-only filename for old clients plus the exact name as filename* (RFC 6266 / RFC 5987),
+     * since Portuguese file names are often not ASCII.
+     */
+    private static String contentDisposition(String fileName) {
+        String fallback = fileName.replaceAll("[^\\x20-\\x7E]", "_").replace("\"", "").replace("\\", "");
+        String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20").replace("*", "%2A");
+        return "inline; filename=\"" + fallback + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    private static void copyRange(java.nio.file.Path file, long start, long length, OutputStream output)
+            throws java.io.IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            in.skipNBytes(start);
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
     @POST
     @Path("/")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
@@ -572,30 +814,96 @@ public class PublicationService {
         }
     }
 
+    @POST
+    @Path("counters/repair")
+    @RolesAllowed({"ADMINISTRADOR"})
+    public Response repairCounters() {
+        int updated = publicationBean.recomputeCounters();
+        return Response.ok()
+                .entity(Map.of("message", "Contadores recalculados para " + updated + " publicações."))
+                .build();
+    }
+
     @GET
     @Path("search")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
-    public Response searchPublications(@QueryParam("q") String searchTerm) {
+    public Response searchPublications(@QueryParam("q") String searchTerm,
+                                       @QueryParam("scope") String scope,
+                                       @QueryParam("limit") Integer limit,
+                                       @QueryParam("cursor") String cursor) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity(Map.of("message", "Parâmetro de pesquisa 'q' é obrigatório"))
                     .build();
         }
 
-        List<Publication> publications;
+        if (scope != null && !scope.isBlank()
+                && !"metadata".equalsIgnoreCase(scope) && !"content".equalsIgnoreCase(scope)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "Âmbito de pesquisa inválido. Use: metadata ou content"))
+                    .build();
+        }
+        boolean content = "content".equalsIgnoreCase(scope);
+
+        if (limit != null || cursor != null) {
+            return searchPublicationsPage(searchTerm, content, limit, cursor);
+        }
+
+        if (content) {
+            return Response.ok(toContentSearchList(publicationBean.searchContent(searchTerm), searchTerm, PublicationBean.DEFAULT_PAGE_SIZE)).build();
+        }
+
+        List<Publication> publications = publicationBean.searchWithComments(searchTerm, SEARCH_COMMENTS_THRESHOLD);
         List<PublicationDTO> dtos;
 
-        if (publicationBean.search(searchTerm).size() < 45) {
-            publications = publicationBean.searchWithComments(searchTerm);
+        if (publications.size() < SEARCH_COMMENTS_THRESHOLD) {
             dtos = PublicationDTO.toSearchListWithComments(publications);
         } else {
-            publications = publicationBean.search(searchTerm);
             dtos = PublicationDTO.toSearchList(publications);
         }
 
         return Response.ok(dtos).build();
     }
 
+    private Response searchPublicationsPage(String searchTerm, boolean content, Integer limit, String cursor) {
+        int pageSize = limit != null ? limit : PublicationBean.DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > PublicationBean.MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "O parâmetro 'limit' deve estar entre 1 e " + PublicationBean.MAX_PAGE_SIZE))
+                    .build();
+        }
+
+        try {
+            PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+            PageDTO<Publication> page = content
+                    ? publicationBean.searchPage(searchTerm, true, after, pageSize)
+                    : publicationBean.searchPage(searchTerm, false, after, pageSize, PublicationBean.Fetch.COMMENTS);
+
+            List<PublicationDTO> dtos = content
+                    ? toContentSearchList(page.getItems(), searchTerm, pageSize)
+                    : PublicationDTO.toSearchListWithComments(page.getItems());
+
+            return Response.ok(new PageDTO<>(dtos, page.getNext(), page.getTotalHits())).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        }
+    }
+
+    // Snippets only for the first maxWithSnippets results: the unpaginated list can hold every hit
+    private List<PublicationDTO> toContentSearchList(List<Publication> publications, String searchTerm, int maxWithSnippets) {
+        List<PublicationDTO> dtos = new ArrayList<>();
+        for (Publication publication : publications) {
+            PublicationDTO dto = PublicationDTO.forSearch(publication);
+            if (dtos.size() < maxWithSnippets) {
+                dto.setHighlights(publicationBean.getContentSnippets(publication, searchTerm));
+            }
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
     @GET
     @Path("filter/tags")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
@@ -0,0 +1,179 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ws;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ejb.EJB;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PublicationDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.UploadSessionDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.UploadSessionBean;
+import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.UserBean;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.Publication;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.UploadSession;
+import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityNotFoundException;
+import pt.ipleiria.estg.dei.ei.dae.backend.security.Authenticated;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Resumable uploads for large documents: open a session, PUT the chunks (any order, each with
+ * its SHA-256 in X-Chunk-SHA256), check which chunks arrived with GET, then commit the
+ * publication metadata.
+ */
+@Path("uploads")
+@Produces({MediaType.APPLICATION_JSON})
+@Consumes({MediaType.APPLICATION_JSON})
+@Authenticated
+public class UploadService {
+    @EJB
+    private UploadSessionBean uploadSessionBean;
+
+    @EJB
+    private UserBean userBean;
+
+    @Context
+    private SecurityContext securityContext;
+
+    @POST
+    @Path("/")
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response createSession(UploadSessionDTO uploadSessionDTO) {
+        try {
+            String username = securityContext.getUserPrincipal().getName();
+            UploadSession session = uploadSessionBean.create(
+                    userBean.find(username),
+                    uploadSessionDTO.getFileName(),
+                    uploadSessionDTO.getSize(),
+                    uploadSessionDTO.getSha256()
+            );
+
+            return Response.status(Response.Status.CREATED)
+                    .entity(UploadSessionDTO.from(session, uploadSessionBean.isAlreadyStored(session)))
+                    .build();
+        } catch (MyEntityNotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("{id}")
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response getSession(@PathParam("id") String id) {
+        try {
+            String username = securityContext.getUserPrincipal().getName();
+            UploadSession session = uploadSessionBean.find(id, username);
+            return Response.ok(UploadSessionDTO.from(session, uploadSessionBean.isAlreadyStored(session))).build();
+        } catch (MyEntityNotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", "Sessão de upload não encontrada"))
+                    .build();
+        }
+    }
+
+    @PUT
+    @Path("{id}/chunks/{index}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response uploadChunk(@PathParam("id") String id,
+                                @PathParam("index") int index,
+                                @HeaderParam("X-Chunk-SHA256") String checksum,
+                                InputStream data) {
+        try {
+            String username = securityContext.getUserPrincipal().getName();
+            UploadSession session = uploadSessionBean.writeChunk(id, username, index, checksum, data);
+            return Response.ok(UploadSessionDTO.from(session, false)).build();
+        } catch (MyEntityNotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", "Sessão de upload não encontrada"))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        } catch (IOException e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of("message", "Erro ao guardar a parte " + index + ": " + e.getMessage()))
+                    .build();
+        }
+    }
+
+    @POST
+    @Path("{id}/commit")
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response commit(@PathParam("id") String id, PublicationDTO publicationDTO) {
+        try {
+            String username = securityContext.getUserPrincipal().getName();
+            String summary = publicationDTO.getSummary();
+            boolean resumoaSerGerado = (summary == null || summary.trim().isEmpty());
+
+            Publication publication = uploadSessionBean.commit(
+                    id,
+                    username,
+                    publicationDTO.getTitle(),
+                    summary,
+                    publicationDTO.getScientificArea(),
+                    LocalDate.parse(publicationDTO.getPublicationDate()),
+                    publicationDTO.getAuthors() != null ? publicationDTO.getAuthors() : new ArrayList<>(),
+                    publicationDTO.getTagIds()
+            );
+
+            if (resumoaSerGerado) {
+                return Response.status(Response.Status.ACCEPTED)
+                        .entity(Map.of(
+                                "message", "Publicação criada com sucesso. O resumo está a ser gerado automaticamente em segundo plano.",
+                                "id", publication.getId(),
+                                "status", "processing",
+                                "description", publication.getDescription()
+                        ))
+                        .build();
+            }
+            return Response.status(Response.Status.CREATED)
+                    .entity(Map.of(
+                            "message", "Publicação com id " + publication.getId() + " criada com sucesso.",
+                            "id", publication.getId(),
+                            "status", "completed"
+                    ))
+                    .build();
+
+        } catch (MyEntityNotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "Erro ao criar publicação: " + e.getMessage()))
+                    .build();
+        }
+    }
+
+    @DELETE
+    @Path("{id}")
+    @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
+    public Response abort(@PathParam("id") String id) {
+        try {
+            uploadSessionBean.abort(id, securityContext.getUserPrincipal().getName());
+            return Response.noContent().build();
+        } catch (MyEntityNotFoundException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("message", "Sessão de upload não encontrada"))
+                    .build();
+        }
+    }
+}
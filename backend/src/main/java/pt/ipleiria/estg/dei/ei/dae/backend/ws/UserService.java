@@ -7,17 +7,21 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PublicationDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.SentEmailDTO;
 import pt.ipleiria.estg.dei.ei.dae.backend.dtos.UserDTO;
-import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.EmailBean;
 import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.PublicationBean;
+import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.SentEmailBean;
 import pt.ipleiria.estg.dei.ei.dae.backend.ejbs.UserBean;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.Publication;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.SentEmail;
 import pt.ipleiria.estg.dei.ei.dae.backend.entities.User;
 import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyConstraintViolationException;
 import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityExistsException;
 import pt.ipleiria.estg.dei.ei.dae.backend.exceptions.MyEntityNotFoundException;
 import pt.ipleiria.estg.dei.ei.dae.backend.security.Authenticated;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.TimeCursor;
 
 import java.util.List;
 import java.util.Map;
@@ -35,7 +39,7 @@ public class UserService {
     private PublicationBean publicationBean;
 
     @EJB
-    private EmailBean emailBean;
+    private SentEmailBean sentEmailBean;
 
     @Context
     private SecurityContext securityContext;
@@ -313,19 +317,37 @@ public class UserService {
     @GET
     @Path("/me/emails")
     @RolesAllowed({"COLABORADOR", "RESPONSAVEL", "ADMINISTRADOR"})
-    public Response getMyEmails() {
+    public Response getMyEmails(@QueryParam("limit") Integer limit,
+                                @QueryParam("cursor") String cursor) {
+        int pageSize = limit != null ? limit : PublicationBean.DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > PublicationBean.MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", "O parâmetro 'limit' deve estar entre 1 e " + PublicationBean.MAX_PAGE_SIZE))
+                    .build();
+        }
+
         try {
             String username = securityContext.getUserPrincipal().getName();
             User user = userBean.find(username);
 
-            List<Map<String, String>> emails = emailBean.getEmailsForUser(user.getEmail());
+            // Without limit or cursor: the latest emails as a plain list, as before
+            if (limit == null && cursor == null) {
+                PageDTO<SentEmail> latest = sentEmailBean.getPage(user.getEmail(), null, PublicationBean.MAX_PAGE_SIZE);
+                return Response.ok(SentEmailDTO.from(latest.getItems())).build();
+            }
 
-            return Response.ok(emails).build();
+            TimeCursor after = cursor != null ? TimeCursor.decode(cursor) : null;
+            PageDTO<SentEmail> page = sentEmailBean.getPage(user.getEmail(), after, pageSize);
+            return Response.ok(new PageDTO<>(SentEmailDTO.from(page.getItems()), page.getNext())).build();
 
         } catch (MyEntityNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(Map.of("message", "Utilizador não encontrado"))
                     .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("message", e.getMessage()))
+                    .build();
         }
     }
 }
@@ -0,0 +1,166 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.*;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.QueryCounter;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the statements a full publication listing (getAll, fetch of comments, ratings and tags,
+ * then everything the DTOs read) sends to an in-memory database, so an N+1 regression fails
+ * the build. The budget check inside PublicationBean.fetch runs in strict mode here.
+ */
+class PublicationBeanFetchTest {
+
+    // 1 for getAll (author and document joined), 1 per fetched association, 1 for the batch-loaded subscribed tags
+    private static final int LISTING_BUDGET = 5;
+
+    private static final int USERS = 5;
+
+    private static String strict;
+
+    @BeforeAll
+    static void enableStrictBudgets() {
+        strict = System.setProperty("centroXYZ.queryBudget.strict", "true");
+    }
+
+    @AfterAll
+    static void restoreBudgets() {
+        if (strict == null) {
+            System.clearProperty("centroXYZ.queryBudget.strict");
+        } else {
+            System.setProperty("centroXYZ.queryBudget.strict", strict);
+        }
+    }
+
+    @Test
+    void listingStaysWithinBudget() throws Exception {
+        long queries = listingQueries(40);
+        assertTrue(queries <= LISTING_BUDGET, "Listing of 40 publications took " + queries + " queries (budget: " + LISTING_BUDGET + ")");
+    }
+
+    @Test
+    void listingQueriesDoNotGrowWithPublications() throws Exception {
+        assertEquals(listingQueries(5), listingQueries(60));
+    }
+
+    @Test
+    void strictBudgetFailsWhenExceeded() {
+        QueryCounter inspector = new QueryCounter();
+        QueryCounter.Budget budget = QueryCounter.expectAtMost("test", 1);
+        inspector.inspect("select 1");
+        inspector.inspect("select 2");
+
+        assertEquals(2, budget.used());
+        assertThrows(IllegalStateException.class, budget::close);
+    }
+
+    @Test
+    void statementsOutsideBudgetsAreNotCounted() {
+        QueryCounter inspector = new QueryCounter();
+        inspector.inspect("select 1");
+
+        long used = QueryCounter.expectAtMost("test", 1, () -> inspector.inspect("select 2"));
+        inspector.inspect("select 3");
+
+        assertEquals(1, used);
+    }
+
+    private static long listingQueries(int publications) throws Exception {
+        EntityManagerFactory factory = Persistence.createEntityManagerFactory("centroXYZTestUnit",
+                Map.of("jakarta.persistence.jdbc.url", "jdbc:h2:mem:listing" + publications + ";DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE"));
+        try {
+            seed(factory, publications);
+
+            EntityManager em = factory.createEntityManager();
+            try {
+                PublicationBean publicationBean = new PublicationBean();
+                Field entityManager = PublicationBean.class.getDeclaredField("em");
+                entityManager.setAccessible(true);
+                entityManager.set(publicationBean, em);
+
+                // Statements are only counted inside a budget; fetch opens its own, nested in this one
+                try (QueryCounter.Budget listing = QueryCounter.expectAtMost("listing", Integer.MAX_VALUE)) {
+                    List<Publication> listed = publicationBean.fetch(publicationBean.getAll(),
+                            PublicationBean.Fetch.COMMENTS, PublicationBean.Fetch.RATINGS, PublicationBean.Fetch.TAGS);
+                    assertEquals(publications, listed.size());
+                    for (Publication publication : listed) {
+                        read(publication);
+                    }
+                    return listing.used();
+                }
+            } finally {
+                em.close();
+            }
+        } finally {
+            factory.close();
+        }
+    }
+
+    // What PublicationDTO reads for a listing with all details
+    private static void read(Publication publication) {
+        publication.getAuthor().getName();
+        publication.getAuthor().getSubscribedTags().size();
+        publication.getDocument();
+        for (Comment comment : publication.getComments()) {
+            comment.getUser().getName();
+        }
+        for (Rating rating : publication.getRatings()) {
+            rating.getUser().getName();
+        }
+        for (Tag tag : publication.getTags()) {
+            tag.getName();
+        }
+    }
+
+    private static void seed(EntityManagerFactory factory, int publications) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            List<Tag> tags = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Tag tag = new Tag("tag" + i);
+                em.persist(tag);
+                tags.add(tag);
+            }
+
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                User user = new User("user" + i, "secret", "user" + i + "@mail.pt", "User " + i, Role.COLABORADOR);
+                user.getSubscribedTags().add(tags.get(i % tags.size()));
+                em.persist(user);
+                users.add(user);
+            }
+
+            for (int i = 0; i < publications; i++) {
+                Publication publication = new Publication("Publicação " + i, "Descrição " + i,
+                        ScientificArea.COMPUTER_SCIENCE, null, LocalDate.now(), users.get(i % USERS));
+                publication.getTags().add(tags.get(i % tags.size()));
+                em.persist(publication);
+
+                for (int j = 0; j < 3; j++) {
+                    User user = users.get((i + j) % USERS);
+                    em.persist(new Comment("Comentário " + j, user, publication));
+                    em.persist(new Rating(1 + j, user, publication));
+                }
+            }
+
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PageDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.*;
+import pt.ipleiria.estg.dei.ei.dae.backend.utils.PageCursor;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks the keyset-paginated listings page by page: every publication must come exactly once,
+ * in order, including averages such as 1/3 and 2/6 that only tie when compared exactly.
+ */
+class PublicationBeanPageTest {
+
+    private static final int PUBLICATIONS = 60;
+
+    private static EntityManagerFactory factory;
+
+    @BeforeAll
+    static void seed() {
+        factory = Persistence.createEntityManagerFactory("centroXYZTestUnit",
+                Map.of("jakarta.persistence.jdbc.url", "jdbc:h2:mem:pages;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE"));
+
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            User user = new User("user", "secret", "user@mail.pt", "User", Role.COLABORADOR);
+            em.persist(user);
+
+            for (int i = 0; i < PUBLICATIONS; i++) {
+                Publication publication = new Publication("Publicação " + i, "Descrição",
+                        ScientificArea.COMPUTER_SCIENCE, null, LocalDate.of(2024, 1, 1 + i % 3), user);
+                int count = i % 7;
+                publication.applyRatingDelta(count + (long) (i * 3) % (4L * count + 1), count);
+                em.persist(publication);
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterAll
+    static void close() {
+        factory.close();
+    }
+
+    @Test
+    void ratingPagesReturnEveryPublicationOnceInOrder() throws Exception {
+        List<Publication> listed = walk(PublicationBean.SORT_RATING, 4);
+
+        assertEquals(PUBLICATIONS, listed.size());
+        assertEquals(PUBLICATIONS, new HashSet<>(listed.stream().map(Publication::getId).toList()).size());
+        for (int i = 1; i < listed.size(); i++) {
+            Publication previous = listed.get(i - 1);
+            Publication current = listed.get(i);
+            // previous average >= current average, compared without division
+            assertTrue(previous.getRatingSum() * Math.max(1, current.getRatingCount())
+                    >= current.getRatingSum() * Math.max(1, previous.getRatingCount()));
+        }
+    }
+
+    @Test
+    void commentPagesReturnEveryPublicationOnce() throws Exception {
+        List<Publication> listed = walk(PublicationBean.SORT_COMMENTS, 7);
+
+        assertEquals(PUBLICATIONS, new HashSet<>(listed.stream().map(Publication::getId).toList()).size());
+    }
+
+    private static List<Publication> walk(String sort, int limit) throws Exception {
+        EntityManager em = factory.createEntityManager();
+        try {
+            PublicationBean publicationBean = new PublicationBean();
+            Field entityManager = PublicationBean.class.getDeclaredField("em");
+            entityManager.setAccessible(true);
+            entityManager.set(publicationBean, em);
+
+            List<Publication> listed = new ArrayList<>();
+            PageCursor after = null;
+            do {
+                PageDTO<Publication> page = publicationBean.getPage(sort, true, after, limit);
+                listed.addAll(page.getItems());
+                after = page.getNext() != null ? PageCursor.decode(page.getNext()) : null;
+            } while (after != null);
+            return listed;
+        } finally {
+            em.close();
+        }
+    }
+}
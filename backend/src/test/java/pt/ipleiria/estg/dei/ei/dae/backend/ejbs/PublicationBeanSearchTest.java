@@ -0,0 +1,100 @@
+package pt.ipleiria.estg.dei.ei.dae.backend.ejbs;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pt.ipleiria.estg.dei.ei.dae.backend.dtos.PublicationDTO;
+import pt.ipleiria.estg.dei.ei.dae.backend.entities.*;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every bean call gets its own persistence context, closed when the call returns, as a
+ * transaction-scoped context is on the server. What the REST layer maps to DTOs afterwards is
+ * detached, so anything not initialized inside the call fails there.
+ */
+class PublicationBeanSearchTest {
+
+    private static EntityManagerFactory factory;
+
+    private final PublicationBean publicationBean = new PublicationBean();
+    private final SearchIndexBean searchIndexBean = new SearchIndexBean();
+
+    @BeforeAll
+    static void seed() {
+        factory = Persistence.createEntityManagerFactory("centroXYZTestUnit",
+                Map.of("jakarta.persistence.jdbc.url", "jdbc:h2:mem:search;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE"));
+
+        EntityManager em = factory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            User user = new User("user", "secret", "user@mail.pt", "User", Role.COLABORADOR);
+            em.persist(user);
+
+            Publication commented = new Publication("Redes neuronais", "Descrição",
+                    ScientificArea.COMPUTER_SCIENCE, null, LocalDate.now(), user);
+            em.persist(commented);
+            em.persist(new Comment("Muito útil", user, commented));
+
+            em.persist(new Publication("Redes de sensores", "Descrição",
+                    ScientificArea.COMPUTER_SCIENCE, null, LocalDate.now(), user));
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterAll
+    static void close() {
+        factory.close();
+    }
+
+    @Test
+    void searchWithCommentsReturnsCommentsReadableAfterTheCall() throws Exception {
+        List<Publication> publications = call(bean -> bean.searchWithComments("redes", 45));
+
+        assertEquals(2, publications.size());
+        List<PublicationDTO> dtos = assertDoesNotThrow(() -> PublicationDTO.toSearchListWithComments(publications));
+        assertTrue(dtos.stream().anyMatch(dto -> "Muito útil".equals(dto.getLastComment())));
+    }
+
+    @Test
+    void searchWithCommentsSkipsCommentsAtTheThreshold() throws Exception {
+        List<Publication> publications = call(bean -> bean.searchWithComments("redes", 2));
+
+        assertEquals(2, publications.size());
+        assertDoesNotThrow(() -> PublicationDTO.toSearchList(publications));
+    }
+
+    // One bean call in its own transaction and persistence context
+    private <T> T call(Function<PublicationBean, T> work) throws Exception {
+        EntityManager em = factory.createEntityManager();
+        try {
+            inject(PublicationBean.class, publicationBean, "em", em);
+            inject(PublicationBean.class, publicationBean, "searchIndexBean", searchIndexBean);
+            inject(SearchIndexBean.class, searchIndexBean, "em", em);
+
+            em.getTransaction().begin();
+            T result = work.apply(publicationBean);
+            em.getTransaction().commit();
+            return result;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static <B> void inject(Class<B> type, B bean, String name, Object value) throws Exception {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(bean, value);
+    }
+}